@@ -0,0 +1,168 @@
+package cc.dames.jepc;
+
+/**
+ * Decimal and grouping separators of an amount string, e.g. "1.234,56" in {@link #GERMAN} notation.
+ * {@link #parseCents(CharSequence)} reads the amount in a single pass without creating strings or numbers.
+ */
+public final class AmountFormat {
+
+    /**
+     * 1.234,56
+     */
+    public static final AmountFormat GERMAN = new AmountFormat(',', ".");
+
+    /**
+     * 1 234,56, with space, no-break space or narrow no-break space
+     */
+    public static final AmountFormat FRENCH = new AmountFormat(',', " \u00A0\u202F");
+
+    /**
+     * 1,234.56
+     */
+    public static final AmountFormat ENGLISH = new AmountFormat('.', ",");
+
+    /**
+     * smallest valid amount in cents, 0.01
+     */
+    public static final long MIN_CENTS = 1L;
+
+    /**
+     * largest valid amount in cents, 999999999.99
+     */
+    public static final long MAX_CENTS = 99_999_999_999L;
+
+    private final char decimalSeparator;
+
+    private final String groupingSeparators;
+
+    private AmountFormat(char decimalSeparator, String groupingSeparators) {
+        this.decimalSeparator = decimalSeparator;
+        this.groupingSeparators = groupingSeparators;
+    }
+
+    /**
+     * @param decimalSeparator separator of the cents
+     * @param groupingSeparators accepted separators of the thousands, may be empty
+     * @return amount format
+     */
+    public static AmountFormat of(char decimalSeparator, String groupingSeparators) {
+        String grouping = groupingSeparators == null ? "" : groupingSeparators;
+        if (isDigit(decimalSeparator) || grouping.indexOf(decimalSeparator) >= 0) {
+            throw new EpcException("decimal separator must differ from digits and grouping separators");
+        }
+        for (int i = 0; i < grouping.length(); i++) {
+            if (isDigit(grouping.charAt(i))) {
+                throw new EpcException("grouping separator can not be a digit");
+            }
+        }
+        return new AmountFormat(decimalSeparator, grouping);
+    }
+
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+
+    public String getGroupingSeparators() {
+        return groupingSeparators;
+    }
+
+    /**
+     * Parses an amount in euro, surrounding whitespace is ignored.
+     * Grouping separators are optional, if present every group after the first must have three digits.
+     * More than two decimals are rounded half even like {@link SepaUtils#bankersRounding(java.math.BigDecimal)}.
+     * @param value amount, e.g. "1.234,56" in {@link #GERMAN}
+     * @return amount in cents
+     * @throws EpcException if value is not an amount in this format or outside 0.01 - 999999999.99
+     */
+    public long parseCents(CharSequence value) {
+        if (value == null) {
+            throw new EpcException("transfer amount can not be empty", "transferAmount");
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            throw new EpcException("transfer amount can not be empty", "transferAmount");
+        }
+
+        long euros = 0;
+        int integerDigits = 0;
+        int groupDigits = 0;
+        boolean grouped = false;
+        int i = start;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (isDigit(c)) {
+                euros = euros * 10 + c - '0';
+                integerDigits++;
+                groupDigits++;
+                if (euros > MAX_CENTS / 100) {
+                    throw outOfRange();
+                }
+            } else if (groupingSeparators.indexOf(c) >= 0) {
+                if (groupDigits == 0 || groupDigits > 3 || (grouped && groupDigits != 3)) {
+                    throw invalid(value);
+                }
+                grouped = true;
+                groupDigits = 0;
+            } else if (c == decimalSeparator) {
+                break;
+            } else {
+                throw invalid(value);
+            }
+        }
+        if (groupDigits == 0 && (grouped || i == end) || (grouped && groupDigits != 3)) {
+            throw invalid(value);
+        }
+
+        long cents = euros * 100;
+        if (i < end) {
+            // decimals after the separator
+            int decimals = 0;
+            int roundingDigit = 0;
+            boolean sticky = false;
+            for (i++; i < end; i++, decimals++) {
+                char c = value.charAt(i);
+                if (!isDigit(c)) {
+                    throw invalid(value);
+                }
+                if (decimals == 0) {
+                    cents += (c - '0') * 10;
+                } else if (decimals == 1) {
+                    cents += c - '0';
+                } else if (decimals == 2) {
+                    roundingDigit = c - '0';
+                } else if (c != '0') {
+                    sticky = true;
+                }
+            }
+            if (decimals == 0 && integerDigits == 0 && groupDigits == 0) {
+                throw invalid(value);
+            }
+            if (roundingDigit > 5 || (roundingDigit == 5 && (sticky || (cents & 1) == 1))) {
+                cents++;
+            }
+        }
+        if (cents < MIN_CENTS || cents > MAX_CENTS) {
+            throw outOfRange();
+        }
+        return cents;
+    }
+
+    private static EpcException invalid(CharSequence value) {
+        return new EpcException("transfer amount " + value + " is not a valid amount", "transferAmount");
+    }
+
+    private static EpcException outOfRange() {
+        return new EpcException("transfer amount is out of valid range, (0.01 - 999999999.99)", "transferAmount");
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,80 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Progress of an {@link EpcBatch} run: the input and output offsets after the last completed row and the counters.
+ * Saved as a properties file, written to a temporary file, synced and renamed so a crash leaves the previous one.
+ */
+final class BatchCheckpoint {
+
+    long inputOffset;
+
+    long outputOffset;
+
+    long row;
+
+    long rows;
+
+    long payloads;
+
+    long duplicates;
+
+    long errors;
+
+    static BatchCheckpoint read(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader(Files.readString(file, StandardCharsets.ISO_8859_1)));
+        BatchCheckpoint checkpoint = new BatchCheckpoint();
+        try {
+            checkpoint.inputOffset = Long.parseLong(properties.getProperty("inputOffset"));
+            checkpoint.outputOffset = Long.parseLong(properties.getProperty("outputOffset"));
+            checkpoint.row = Long.parseLong(properties.getProperty("row"));
+            checkpoint.rows = Long.parseLong(properties.getProperty("rows"));
+            checkpoint.payloads = Long.parseLong(properties.getProperty("payloads"));
+            checkpoint.duplicates = Long.parseLong(properties.getProperty("duplicates"));
+            checkpoint.errors = Long.parseLong(properties.getProperty("errors"));
+        } catch (NumberFormatException e) {
+            throw new EpcException("checkpoint " + file + " is corrupt");
+        }
+        return checkpoint;
+    }
+
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("inputOffset", Long.toString(inputOffset));
+        properties.setProperty("outputOffset", Long.toString(outputOffset));
+        properties.setProperty("row", Long.toString(row));
+        properties.setProperty("rows", Long.toString(rows));
+        properties.setProperty("payloads", Long.toString(payloads));
+        properties.setProperty("duplicates", Long.toString(duplicates));
+        properties.setProperty("errors", Long.toString(errors));
+        StringWriter text = new StringWriter();
+        properties.store(text, null);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.ISO_8859_1));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    EpcBatchResult toResult() {
+        return new EpcBatchResult(rows, payloads, duplicates, errors);
+    }
+}
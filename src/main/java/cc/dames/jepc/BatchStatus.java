@@ -0,0 +1,23 @@
+package cc.dames.jepc;
+
+/**
+ * Outcome of a row of {@link EpcBatch}
+ */
+public enum BatchStatus {
+
+    /**
+     * payload generated
+     */
+    OK,
+
+    /**
+     * same payment as an earlier row, see {@link DuplicateFilter}
+     */
+    DUPLICATE,
+
+    /**
+     * record can not be parsed or is invalid
+     */
+    ERROR
+
+}
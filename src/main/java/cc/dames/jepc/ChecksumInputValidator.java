@@ -0,0 +1,168 @@
+package cc.dames.jepc;
+
+/**
+ * Validates an IBAN or SCOR while it is typed, one character at a time.
+ * Each keystroke costs O(1): the structure is checked for the new position only and the
+ * mod 97 remainder is carried forward, the state after every character is kept for deletion.
+ * Blanks are ignored where the final validation of {@link SepaUtils} ignores them.
+ * Instances are not thread-safe.
+ */
+public abstract class ChecksumInputValidator {
+
+    private static final int MAX_INPUT = 64;
+
+    // input without blanks, upper case
+    private final char[] chars = new char[MAX_INPUT];
+
+    // state after i typed characters, index 0 is the empty input
+    private final int[] lengths = new int[MAX_INPUT + 1];
+
+    private final int[] remainders = new int[MAX_INPUT + 1];
+
+    private final boolean[] structures = new boolean[MAX_INPUT + 1];
+
+    private int input;
+
+    private int overflow;
+
+    ChecksumInputValidator() {
+        structures[0] = true;
+    }
+
+    /**
+     * @param c typed character
+     * @return state of the input including c
+     */
+    public InputState append(char c) {
+        if (input == MAX_INPUT) {
+            overflow++;
+            return InputState.INVALID;
+        }
+        int length = lengths[input];
+        int remainder = remainders[input];
+        boolean structure = structures[input];
+        if (c == ' ') {
+            structure = structure && acceptsBlank(length);
+        } else {
+            c = normalize(c);
+            structure = structure && accepts(length, c);
+            if (structure && length >= 4) {
+                remainder = SepaUtils.mod97(remainder, c);
+            }
+            if (length < MAX_INPUT) {
+                chars[length] = c;
+            }
+            length++;
+        }
+        input++;
+        lengths[input] = length;
+        remainders[input] = remainder;
+        structures[input] = structure;
+        return getState();
+    }
+
+    /**
+     * Removes the last typed character, e.g. on backspace
+     * @return state of the remaining input
+     */
+    public InputState deleteLast() {
+        if (overflow > 0) {
+            overflow--;
+        } else if (input > 0) {
+            input--;
+        }
+        return getState();
+    }
+
+    /**
+     * Replaces the whole input, e.g. on paste
+     * @param value new input
+     * @return state of the new input
+     */
+    public InputState set(CharSequence value) {
+        clear();
+        InputState state = getState();
+        for (int i = 0; value != null && i < value.length(); i++) {
+            state = append(value.charAt(i));
+        }
+        return state;
+    }
+
+    public void clear() {
+        input = 0;
+        overflow = 0;
+    }
+
+    /**
+     * @return state of the current input
+     */
+    public InputState getState() {
+        if (overflow > 0 || !structures[input]) {
+            return InputState.INVALID;
+        }
+        return state(lengths[input], remainders[input]);
+    }
+
+    /**
+     * @return current input without blanks, upper case
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, Math.min(lengths[input], MAX_INPUT));
+    }
+
+    /**
+     * @param position position in the input without blanks
+     * @param c upper case character
+     * @return true if the format allows c at this position
+     */
+    abstract boolean accepts(int position, char c);
+
+    /**
+     * @param position position in the input without blanks
+     * @return true if a blank is ignored at this position, anywhere by default
+     */
+    boolean acceptsBlank(int position) {
+        return true;
+    }
+
+    /**
+     * @param length length of the structurally valid input without blanks
+     * @param remainder mod 97 remainder of the characters from position 4
+     * @return state of the input
+     */
+    abstract InputState state(int length, int remainder);
+
+    /**
+     * @return character as validated and stored, upper case by default
+     */
+    char normalize(char c) {
+        return Character.toUpperCase(c);
+    }
+
+    int length() {
+        return lengths[input];
+    }
+
+    char charAt(int position) {
+        return chars[position];
+    }
+
+    /**
+     * @return remainder with the first four characters appended, 1 if the checksum is valid
+     */
+    int checksum(int remainder) {
+        for (int i = 0; i < 4; i++) {
+            remainder = SepaUtils.mod97(remainder, chars[i]);
+        }
+        return remainder;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+}
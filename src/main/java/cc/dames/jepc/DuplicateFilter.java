@@ -0,0 +1,274 @@
+package cc.dames.jepc;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Detects repeated payments in a batch: same IBAN, same amount and same SCOR, or same intended use if there is no SCOR.
+ * The fields are normalized (IBAN and SCOR without spaces in upper case, amount in cents) and hashed to a 128 bit
+ * fingerprint. A Bloom filter answers for most payments that they are new, their fingerprints are only appended
+ * to a log. The positives of the Bloom filter are confirmed against an open addressing index over the log, which
+ * is brought up to date lazily when a positive has to be confirmed. Confirming can be turned off to trade
+ * exactness for memory.
+ * Not thread-safe, payments are expected in input order so the first one of duplicates is kept.
+ */
+public final class DuplicateFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    // fingerprints of the new payments, two longs each, null if positives are not confirmed
+    private long[] log;
+
+    private int logSize;
+
+    // open addressing index of log entries + 1, an empty slot is 0, covers the first indexed entries
+    private int[] index;
+
+    private int indexed;
+
+    private long duplicates;
+
+    private long falsePositives;
+
+    private DuplicateFilter(long bitCount, int hashCount, boolean confirm, long expectedCount) {
+        this.bits = new long[(int) (bitCount >>> 6)];
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        if (confirm) {
+            int capacity = capacity(expectedCount);
+            this.log = new long[capacity];
+            this.index = new int[capacity];
+        }
+    }
+
+    /**
+     * Adds the payment if it is not a duplicate
+     * @param request valid payment request
+     * @return true if the payment is new, false if it is a duplicate of an earlier one
+     */
+    public boolean add(Epc.Builder request) {
+        long[] fingerprint = new long[2];
+        fingerprint(request, fingerprint);
+        return add(fingerprint[0], fingerprint[1]);
+    }
+
+    boolean add(long h1, long h2) {
+        boolean added = false;
+        long hash = h1;
+        for (int i = 0; i < hashCount; i++, hash += h2) {
+            long bit = Long.remainderUnsigned(hash, bitCount);
+            long word = bits[(int) (bit >>> 6)];
+            long mask = 1L << bit;
+            if ((word & mask) == 0) {
+                bits[(int) (bit >>> 6)] = word | mask;
+                added = true;
+            }
+        }
+        if (log == null) {
+            if (!added) {
+                duplicates++;
+            }
+            return added;
+        }
+        if (!added) {
+            // only Bloom positives touch the index
+            if (contains(h1, h2)) {
+                duplicates++;
+                return false;
+            }
+            falsePositives++;
+        }
+        append(h1, h2);
+        return true;
+    }
+
+    /**
+     * @return number of duplicates found, probable ones if there is no confirm set
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return number of Bloom filter positives rejected by the confirm set
+     */
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * @return size of the Bloom filter in bits
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * @return number of bits set per payment
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return true if positives are confirmed exactly
+     */
+    public boolean isConfirmed() {
+        return log != null;
+    }
+
+    private void append(long h1, long h2) {
+        if (2 * logSize == log.length) {
+            if (logSize >= 1 << 29) {
+                throw new EpcException("too many payments for the confirm set");
+            }
+            log = Arrays.copyOf(log, 2 * log.length);
+        }
+        log[2 * logSize] = h1;
+        log[2 * logSize + 1] = h2;
+        logSize++;
+    }
+
+    /**
+     * Indexes the entries appended since the last positive, then probes the index
+     */
+    private boolean contains(long h1, long h2) {
+        if (2 * logSize > index.length) {
+            index = new int[Integer.highestOneBit(2 * logSize - 1) << 1];
+            indexed = 0;
+        }
+        int mask = index.length - 1;
+        for (; indexed < logSize; indexed++) {
+            int slot = (int) log[2 * indexed] & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = indexed + 1;
+        }
+        for (int slot = (int) h1 & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = index[slot] - 1;
+            if (log[2 * entry] == h1 && log[2 * entry + 1] == h2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Two independent 64 bit hashes of the normalized IBAN, amount and SCOR or intended use
+     */
+    static void fingerprint(Epc.Builder request, long[] fingerprint) {
+        long h1 = 0xCBF29CE484222325L;
+        long h2 = 0x9E3779B97F4A7C15L;
+        String iban = request.getIban();
+        for (int i = 0; iban != null && i < iban.length(); i++) {
+            char c = iban.charAt(i);
+            if (c != ' ') {
+                c = Character.toUpperCase(c);
+                h1 = (h1 ^ c) * 0x100000001B3L;
+                h2 = (h2 + c) * 0xC2B2AE3D27D4EB4FL;
+            }
+        }
+        BigDecimal amount = request.getTransferAmount();
+        long cents = amount == null ? -1L : SepaUtils.bankersRounding(amount).unscaledValue().longValue();
+        h1 = (h1 ^ cents) * 0x100000001B3L;
+        h2 = (h2 + cents) * 0xC2B2AE3D27D4EB4FL;
+        String reference = request.getScor();
+        boolean scor = SepaUtils.strNotEmpty(reference);
+        if (!scor) {
+            reference = request.getIntendedUse();
+        }
+        // a marker keeps a SCOR and an intended use of the same text apart
+        h1 = (h1 ^ (scor ? 1 : 2)) * 0x100000001B3L;
+        h2 = (h2 + (scor ? 1 : 2)) * 0xC2B2AE3D27D4EB4FL;
+        for (int i = 0; reference != null && i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (scor && c == ' ') {
+                continue;
+            }
+            c = scor ? Character.toUpperCase(c) : c;
+            h1 = (h1 ^ c) * 0x100000001B3L;
+            h2 = (h2 + c) * 0xC2B2AE3D27D4EB4FL;
+        }
+        fingerprint[0] = mix(h1);
+        fingerprint[1] = mix(h2);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int capacity(long expectedCount) {
+        // load factor of at most 0.5
+        long capacity = Long.highestOneBit(Math.max(2L, expectedCount) * 2 - 1) << 1;
+        if (capacity > 1 << 29) {
+            throw new EpcException("expected count is too large for the confirm set");
+        }
+        return (int) capacity;
+    }
+
+    public static class Builder {
+
+        private long expectedCount = 1_000_000L;
+
+        private double falsePositiveRate = 0.001;
+
+        private boolean confirm = true;
+
+        /**
+         * @param value expected number of payments, default 1000000
+         * @return Builder object
+         */
+        public Builder withExpectedCount(long value) {
+            if (value < 1) {
+                throw new EpcException("expected count must be positive");
+            }
+            this.expectedCount = value;
+            return this;
+        }
+
+        /**
+         * @param value false-positive rate of the Bloom filter at the expected count, default 0.001
+         * @return Builder object
+         */
+        public Builder withFalsePositiveRate(double value) {
+            if (!(value > 0 && value < 1)) {
+                throw new EpcException("false-positive rate must be between 0 and 1");
+            }
+            this.falsePositiveRate = value;
+            return this;
+        }
+
+        /**
+         * @param value true to confirm positives with the exact fingerprint set, default true,
+         *              false flags a new payment as duplicate at the false-positive rate but uses about 24 bytes less per payment
+         * @return Builder object
+         */
+        public Builder withConfirm(boolean value) {
+            this.confirm = value;
+            return this;
+        }
+
+        public DuplicateFilter build() {
+            // m = -n ln p / ln2^2 bits, k = m / n ln2 hashes
+            double bitsPerEntry = -Math.log(falsePositiveRate) / (LN2 * LN2);
+            long bitCount = ((long) Math.ceil(expectedCount * bitsPerEntry) + 63) & ~63L;
+            if (bitCount >>> 6 > Integer.MAX_VALUE - 8) {
+                throw new EpcException("Bloom filter for " + expectedCount + " payments is too large");
+            }
+            int hashCount = Math.max(1, (int) Math.round(bitsPerEntry * LN2));
+            return new DuplicateFilter(bitCount, hashCount, confirm, confirm ? expectedCount : 0);
+        }
+    }
+}
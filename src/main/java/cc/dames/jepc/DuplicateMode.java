@@ -0,0 +1,18 @@
+package cc.dames.jepc;
+
+/**
+ * Handling of duplicate payments in {@link EpcBatch}
+ */
+public enum DuplicateMode {
+
+    /**
+     * write the row with status {@link BatchStatus#DUPLICATE} and no payload
+     */
+    FLAG,
+
+    /**
+     * leave the row out of the output, it is counted only
+     */
+    DROP
+
+}
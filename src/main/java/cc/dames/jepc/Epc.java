@@ -1,7 +1,13 @@
 package cc.dames.jepc;
 
 import java.math.BigDecimal;
-import java.util.regex.Matcher;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 
 import static cc.dames.jepc.SepaUtils.*;
 
@@ -15,9 +21,43 @@ import static cc.dames.jepc.SepaUtils.*;
  */
 public final class Epc {
 
+    /**
+     * maximum size of an EPC payload in bytes, the capacity of a version 13 QR code with error level M
+     */
+    public static final int MAX_PAYLOAD_BYTES = 331;
+
+    /**
+     * character encoding 0 selects the encoding on build, see {@link Builder#withCharacterEncoding(int)}
+     */
+    public static final int AUTOMATIC_CHARACTER_ENCODING = 0;
+
+    // character encodings 1-8
+    private static final String[] CHARSET_NAMES = {
+            "UTF-8", "ISO-8859-1", "ISO-8859-2", "ISO-8859-4", "ISO-8859-5", "ISO-8859-7", "ISO-8859-10", "ISO-8859-15"
+    };
+
     private Epc() {
     }
 
+    /**
+     * @param characterEncoding character encoding of row 3, 1-8
+     * @return charset to encode the payload with
+     */
+    static Charset charset(int characterEncoding) {
+        if (characterEncoding < 1 || characterEncoding > CHARSET_NAMES.length) {
+            throw new EpcException("character encoding must be between 1 and 8", "characterEncoding");
+        }
+        String name = CHARSET_NAMES[characterEncoding - 1];
+        if (Charset.isSupported(name)) {
+            return Charset.forName(name);
+        }
+        if (characterEncoding == 7) {
+            // the JDK has no ISO 8859-10, it shares ASCII and the german umlauts with ISO 8859-1
+            return StandardCharsets.ISO_8859_1;
+        }
+        throw new EpcException("character encoding " + name + " is not supported by this JVM", "characterEncoding");
+    }
+
     public static class Builder {
 
         private LineFeed lf = LineFeed.LF;
@@ -92,7 +132,9 @@ public final class Epc {
          * <li>ISO 8859-10
          * <li>ISO 8859-15
          * </ul>
-         * @param value character encoding, 1-8
+         * {@link Epc#AUTOMATIC_CHARACTER_ENCODING} keeps UTF-8 for ASCII text and otherwise selects ISO 8859-1,
+         * so umlauts take one byte instead of two.
+         * @param value character encoding, 1-8, or 0 for automatic selection
          * @return Epc object
          */
         public Builder withCharacterEncoding(int value) {
@@ -167,6 +209,18 @@ public final class Epc {
             return this;
         }
 
+        /**
+         * Amount of the SEPA Credit Transfer in euro with grouping separators, mandatory
+         * @param value amount, e.g. "1.234,56" in {@link AmountFormat#GERMAN}
+         * @param format decimal and grouping separators of value
+         * @return Epc object
+         * @throws EpcException if value is not an amount in format or out of range
+         */
+        public Builder withTransferAmount(CharSequence value, AmountFormat format) {
+            this.transferAmount = BigDecimal.valueOf(format.parseCents(value), 2);
+            return this;
+        }
+
         /**
          * Purpose of the SEPA Credit Transfer, optional
          * @param value purpose
@@ -209,24 +263,174 @@ public final class Epc {
             return this;
         }
 
+        LineFeed getLineFeed() {
+            return lf;
+        }
+
+        Version getVersion() {
+            return version;
+        }
+
+        int getCharacterEncoding() {
+            return characterEncoding;
+        }
+
+        String getBic() {
+            return bic;
+        }
+
+        String getIssuer() {
+            return issuer;
+        }
+
+        String getIban() {
+            return iban;
+        }
+
+        BigDecimal getTransferAmount() {
+            return transferAmount;
+        }
+
+        SepaPurpose getSepaPurpose() {
+            return sepaPurpose;
+        }
+
+        String getScor() {
+            return scor;
+        }
+
+        String getIntendedUse() {
+            return intendedUse;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        boolean isUmlauts() {
+            return umlauts;
+        }
+
+        /**
+         * @return character encoding written to row 3, the selected one for {@link Epc#AUTOMATIC_CHARACTER_ENCODING},
+         * values out of range are returned as set and rejected on build
+         */
+        public int getEffectiveCharacterEncoding() {
+            if (characterEncoding != AUTOMATIC_CHARACTER_ENCODING) {
+                return characterEncoding;
+            }
+            // valid text is ASCII plus the german umlauts, ISO 8859-1 has them all
+            return isAscii(issuer) && isAscii(intendedUse) && isAscii(message) ? 1 : 2;
+        }
+
+        /**
+         * @return size of the payload in bytes of its character encoding, as written by {@link #build(ByteBuffer)}
+         * @throws EpcException if the request is invalid
+         */
+        public int getPayloadSize() {
+            int encoding = getEffectiveCharacterEncoding();
+            String payload = build(encoding);
+            if (encoding != 1) {
+                return payload.length();
+            }
+            int size = payload.length();
+            for (int i = 0; i < payload.length(); i++) {
+                char c = payload.charAt(i);
+                if (c >= 0x800) {
+                    size += Character.isSurrogate(c) ? 1 : 2;
+                } else if (c >= 0x80) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Writes the payload encoded with its character encoding at the position of target and advances it
+         * @param target buffer to write to
+         * @return number of bytes written
+         * @throws BufferOverflowException if target has not enough space, the position is unchanged then,
+         * bytes after it may be overwritten
+         * @throws EpcException if the request is invalid or the payload can not be encoded in its character encoding,
+         * the position is unchanged then, bytes after it may be overwritten
+         */
+        public int build(ByteBuffer target) {
+            int encoding = getEffectiveCharacterEncoding();
+            String payload = build(encoding);
+            CharsetEncoder encoder = charset(encoding).newEncoder();
+            int start = target.position();
+            CoderResult result = encoder.encode(CharBuffer.wrap(payload), target, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(target);
+            }
+            if (result.isOverflow()) {
+                target.position(start);
+                throw new BufferOverflowException();
+            }
+            if (result.isError()) {
+                target.position(start);
+                throw new EpcException("payload can not be encoded in " + encoder.charset().name(), "characterEncoding");
+            }
+            return target.position() - start;
+        }
+
         public String build() {
+            return build(getEffectiveCharacterEncoding());
+        }
+
+        private String build(int characterEncoding) {
+            EpcBuildEvent event = new EpcBuildEvent();
+            event.begin();
+            try {
+                String payload = buildPayload(characterEncoding);
+                if (event.shouldCommit()) {
+                    event.version = version == null ? null : version.getCode();
+                    event.characterEncoding = characterEncoding;
+                    event.payloadSize = characterEncoding == 1 ? payload.getBytes(StandardCharsets.UTF_8).length : payload.length();
+                    event.commit();
+                }
+                return payload;
+            } catch (EpcException e) {
+                if (event.shouldCommit()) {
+                    event.version = version == null ? null : version.getCode();
+                    event.characterEncoding = characterEncoding;
+                    event.failedField = e.getField();
+                    event.failure = e.getMessage();
+                    event.commit();
+                }
+                throw e;
+            }
+        }
+
+        private static boolean isAscii(String value) {
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    if (value.charAt(i) >= 0x80) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private String buildPayload(int characterEncoding) {
 
             final String CURRENCY = "EUR";
 
             if (Version.V001 == version && strEmpty(bic)) {
-                throw new EpcException("BIC can not be empty if version is " + Version.V001.getCode());
+                throw new EpcException("BIC can not be empty if version is " + Version.V001.getCode(), "bic");
             }
 
             if (strEmpty(iban)) {
-                throw new EpcException("IBAN can not be empty");
+                throw new EpcException("IBAN can not be empty", "iban");
             }
 
             if (transferAmount == null) {
-                throw new EpcException("transfer amount can not be empty");
+                throw new EpcException("transfer amount can not be empty", "transferAmount");
             }
 
             if (strNotEmpty(scor) && strNotEmpty(intendedUse)) {
-                throw new EpcException("either SCOR or intended use can be set");
+                throw new EpcException("either SCOR or intended use can be set", "scor");
             }
 
             final String lineFeedCode = lf.getCode();
@@ -261,7 +465,7 @@ public final class Epc {
 
         private int checkCharacterEncoding(int characterEncoding) {
             if (characterEncoding < 1 || characterEncoding > 8) {
-                throw new EpcException("character encoding must be between 1 and 8");
+                throw new EpcException("character encoding must be between 1 and 8", "characterEncoding");
             }
             return characterEncoding;
         }
@@ -271,10 +475,10 @@ public final class Epc {
                 return "";
             }
             if (value.length() > 11) {
-                throw new EpcException("BIC exceed allowed length, max. 11");
+                throw new EpcException("BIC exceed allowed length, max. 11", "bic");
             }
-            if (!BIC_REGEX_PATTERN.matcher(value).matches()) {
-                throw new EpcException("BIC contains invalid character(s)");
+            if (!validateBIC(value)) {
+                throw new EpcException("BIC contains invalid character(s)", "bic");
             }
             return value;
         }
@@ -284,32 +488,30 @@ public final class Epc {
                 return "";
             }
             if (value.length() > 70) {
-                throw new EpcException("issuer exceed allowed length, max. 70");
+                throw new EpcException("issuer exceed allowed length, max. 70", "issuer");
             }
-            Matcher matcher = umlauts ? SEPA_TEXT_UMLAUTS_PATTERN.matcher(value) : SEPA_TEXT_PATTERN.matcher(value);
-            if (!matcher.matches()) {
-                throw new EpcException("issuer contains invalid character(s)");
+            if (!validateSepaText(value, umlauts)) {
+                throw new EpcException("issuer contains invalid character(s)", "issuer");
             }
             return value;
         }
 
         private String checkIBAN(String value) {
             if (strEmpty(value)) {
-                throw new EpcException("IBAN is mandatory");
+                throw new EpcException("IBAN is mandatory", "iban");
             }
             if (value.length() > 34) {
-                throw new EpcException("IBAN exceed allowed length, max. 34");
+                throw new EpcException("IBAN exceed allowed length, max. 34", "iban");
             }
-            Matcher matcher = IBAN_PATTERN.matcher(iban);
-            if (!matcher.matches()) {
-                throw new EpcException("IBAN has invalid format");
+            if (!validateIBANFormat(iban)) {
+                throw new EpcException("IBAN has invalid format", "iban");
             }
             return iban;
         }
 
         private BigDecimal checkTransferAmount(BigDecimal value) {
             if (exceedAmount(value)) {
-                throw new EpcException("transfer amount is out of valid range, (0.01 - 999999999.99)");
+                throw new EpcException("transfer amount is out of valid range, (0.01 - 999999999.99)", "transferAmount");
             }
             return bankersRounding(value);
         }
@@ -324,7 +526,7 @@ public final class Epc {
             }
             String sanitized = value.replace(" ", "");
             if (!validateSCOR(sanitized)) {
-                throw new EpcException("SCOR has invalid format or checksum");
+                throw new EpcException("SCOR has invalid format or checksum", "scor");
             }
             return sanitized;
         }
@@ -334,11 +536,10 @@ public final class Epc {
                 return "";
             }
             if (value.length() > 140) {
-                throw new EpcException("intended use contains to many character(s), max. 140");
+                throw new EpcException("intended use contains to many character(s), max. 140", "intendedUse");
             }
-            Matcher matcher = umlauts ? SEPA_TEXT_UMLAUTS_PATTERN.matcher(value) : SEPA_TEXT_PATTERN.matcher(value);
-            if (!matcher.matches()) {
-                throw new EpcException("intended use contains invalid character(s)");
+            if (!validateSepaText(value, umlauts)) {
+                throw new EpcException("intended use contains invalid character(s)", "intendedUse");
             }
             return value;
         }
@@ -348,11 +549,10 @@ public final class Epc {
                 return "";
             }
             if (value.length() > 70) {
-                throw new EpcException("message contains to many character(s), max. 70");
+                throw new EpcException("message contains to many character(s), max. 70", "message");
             }
-            Matcher matcher = umlauts ? SEPA_TEXT_UMLAUTS_PATTERN.matcher(value) : SEPA_TEXT_PATTERN.matcher(value);
-            if (!matcher.matches()) {
-                throw new EpcException("message contains invalid character(s)");
+            if (!validateSepaText(value, umlauts)) {
+                throw new EpcException("message contains invalid character(s)", "message");
             }
             return value;
         }
@@ -0,0 +1,236 @@
+package cc.dames.jepc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Append-only archive of EPC payloads in fixed-size slots of memory-mapped segment files.
+ * Slot i holds payload i as written by {@link Epc.Builder#build(ByteBuffer)}: a 4 byte length followed by
+ * at most {@link Epc#MAX_PAYLOAD_BYTES} bytes. A slot of length 0 is empty, -1 is claimed by a writer.
+ * Writers claim a slot by compare-and-set of its length and publish the length with a release store after
+ * the payload, readers load it with acquire, so a slot is read either empty or complete. Appends and reads
+ * from several threads need no locking, reads by index are O(1) and return the stored bytes without copying.
+ * Only one process may open an archive. Segment files are named segment-00000000.epc.
+ */
+public final class EpcArchive implements Closeable {
+
+    /**
+     * bytes per slot, 4 byte length and payload padded to a multiple of 8
+     */
+    public static final int SLOT_SIZE = 336;
+
+    private static final int DEFAULT_SLOTS_PER_SEGMENT = 1 << 18;
+
+    private static final int CLAIMED = -1;
+
+    private static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+
+    private final int slotsPerSegment;
+
+    private final ConcurrentMap<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    private final AtomicLong size;
+
+    private EpcArchive(Path directory, int slotsPerSegment) throws IOException {
+        this.directory = directory;
+        this.slotsPerSegment = slotsPerSegment;
+        this.size = new AtomicLong(recoverSize());
+    }
+
+    /**
+     * Opens or creates an archive with 262144 slots per segment file, 88 MB
+     * @param directory directory of the segment files, created if missing
+     * @return archive
+     * @throws IOException if the directory can not be read or created
+     */
+    public static EpcArchive open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SLOTS_PER_SEGMENT);
+    }
+
+    /**
+     * @param directory directory of the segment files, created if missing
+     * @param slotsPerSegment slots per segment file, must match an existing archive
+     * @return archive
+     * @throws IOException if the directory can not be read or created
+     */
+    public static EpcArchive open(Path directory, int slotsPerSegment) throws IOException {
+        if (slotsPerSegment < 1 || (long) slotsPerSegment * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new EpcException("slots per segment must be between 1 and " + Integer.MAX_VALUE / SLOT_SIZE);
+        }
+        Files.createDirectories(directory);
+        Path first = segmentFile(directory, 0);
+        if (Files.exists(first) && Files.size(first) != (long) slotsPerSegment * SLOT_SIZE) {
+            throw new EpcException("archive has " + Files.size(first) / SLOT_SIZE + " slots per segment");
+        }
+        return new EpcArchive(directory, slotsPerSegment);
+    }
+
+    /**
+     * Writes the payload into the next free slot
+     * @param request payload to build
+     * @return index of the slot
+     * @throws EpcException if the payload is invalid or exceeds {@link Epc#MAX_PAYLOAD_BYTES}, the claimed slot stays empty
+     */
+    public long append(Epc.Builder request) {
+        long index = size.getAndIncrement();
+        write(index, request);
+        return index;
+    }
+
+    /**
+     * Writes the payload into the slot of index, e.g. an invoice index
+     * @param index slot index
+     * @param request payload to build
+     * @throws EpcException if the slot is not empty or the payload is invalid or exceeds {@link Epc#MAX_PAYLOAD_BYTES}
+     */
+    public void write(long index, Epc.Builder request) {
+        ByteBuffer slot = slot(index);
+        if (!LENGTH.compareAndSet(slot, 0, 0, CLAIMED)) {
+            throw new EpcException("slot " + index + " is already written");
+        }
+        int length = 0;
+        try {
+            slot.position(4).limit(4 + Epc.MAX_PAYLOAD_BYTES);
+            length = request.build(slot);
+        } catch (BufferOverflowException e) {
+            throw new EpcException("payload exceeds " + Epc.MAX_PAYLOAD_BYTES + " bytes");
+        } finally {
+            // length last, a slot is not visible before its payload is complete; released again on failure
+            LENGTH.setRelease(slot, 0, length);
+        }
+        size.accumulateAndGet(index + 1, Math::max);
+    }
+
+    /**
+     * @param index slot index
+     * @return read-only view of the payload bytes, null if the slot is empty or still being written
+     */
+    public ByteBuffer read(long index) {
+        if (index < 0 || index >= size.get()) {
+            return null;
+        }
+        ByteBuffer slot = slot(index);
+        int length = (int) LENGTH.getAcquire(slot, 0);
+        if (length <= 0) {
+            return null;
+        }
+        return slot.slice(4, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param index slot index
+     * @return payload decoded with the character encoding of its row 3, null if the slot is empty
+     */
+    public String readString(long index) {
+        ByteBuffer payload = read(index);
+        return payload == null ? null : decode(payload);
+    }
+
+    /**
+     * Reads the slots in index order, segment by segment
+     * @param from first slot index
+     * @param consumer called with a read-only view of each payload and its index, empty slots are skipped
+     */
+    public void scan(long from, ObjLongConsumer<ByteBuffer> consumer) {
+        long end = size.get();
+        for (long index = Math.max(0, from); index < end; index++) {
+            ByteBuffer payload = read(index);
+            if (payload != null) {
+                consumer.accept(payload, index);
+            }
+        }
+    }
+
+    /**
+     * @return number of slots up to the last written one, including empty slots
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Writes changed slots to disk
+     */
+    public void force() {
+        segments.values().forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() {
+        force();
+        segments.clear();
+    }
+
+    /**
+     * @param payload EPC payload bytes
+     * @return payload decoded with the character encoding of its row 3
+     */
+    static String decode(ByteBuffer payload) {
+        // row 3 follows "BCD" and the version, either with LF or CRLF
+        int offset = payload.get(payload.position() + 3) == '\r' ? 10 : 8;
+        int characterEncoding = payload.remaining() > offset ? payload.get(payload.position() + offset) - '0' : 1;
+        return Epc.charset(characterEncoding).decode(payload.duplicate()).toString();
+    }
+
+    private ByteBuffer slot(long index) {
+        if (index < 0) {
+            throw new EpcException("slot index can not be negative");
+        }
+        MappedByteBuffer segment = segments.computeIfAbsent(index / slotsPerSegment, this::map);
+        return segment.slice((int) (index % slotsPerSegment) * SLOT_SIZE, SLOT_SIZE);
+    }
+
+    private MappedByteBuffer map(long segment) {
+        try (FileChannel channel = FileChannel.open(segmentFile(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotsPerSegment * SLOT_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("mapping segment " + segment + " failed", e);
+        }
+    }
+
+    private long recoverSize() throws IOException {
+        long segment = 0;
+        while (Files.exists(segmentFile(directory, segment + 1))) {
+            segment++;
+        }
+        if (!Files.exists(segmentFile(directory, segment))) {
+            return 0;
+        }
+        // slots claimed by writers that did not finish are empty again
+        long recovered = 0;
+        for (long s = 0; s <= segment; s++) {
+            MappedByteBuffer mapped = segments.computeIfAbsent(s, this::map);
+            for (int slot = 0; slot < slotsPerSegment; slot++) {
+                int length = mapped.getInt(slot * SLOT_SIZE);
+                if (length == CLAIMED) {
+                    mapped.putInt(slot * SLOT_SIZE, 0);
+                } else if (length != 0) {
+                    recovered = s * slotsPerSegment + slot + 1;
+                }
+            }
+        }
+        return recovered;
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("segment-%08d.epc", segment));
+    }
+}
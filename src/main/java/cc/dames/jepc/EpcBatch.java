@@ -0,0 +1,590 @@
+package cc.dames.jepc;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Generates the payloads of a file of {@link EpcRecord} lines. Each input row gives one output line:
+ * <pre>
+ * row  key  status  payload rows
+ * </pre>
+ * Rows are numbered from 0, status is a {@link BatchStatus}. The payload rows are separated by tabs,
+ * an {@link BatchStatus#ERROR} line has the failed field and the message instead.
+ * <p>
+ * To spread a run over several nodes, each node processes the same input with {@link Builder#withShard(int, int)}.
+ * A row belongs to the shard of a stable hash of its key, rows of other shards are skipped after reading the key,
+ * and keep their row numbers so {@link #merge(List, Path)} can restore the input order. With duplicate detection
+ * the hash is taken of the payment instead, so its duplicates share its shard whatever their keys.
+ * <p>
+ * With {@link ShardMode#BYTE_RANGE} the input is split into byte ranges aligned to line starts instead, so a node
+ * seeks to its range and reads no other rows. A shard then numbers its rows from the start of its range.
+ * <p>
+ * A shard output ends with a line
+ * <pre>
+ * #shard  mode  shard  shards  start offset  end offset  input rows
+ * </pre>
+ * from which {@link #merge(List, Path)} checks that the outputs are the shards of one input.
+ */
+public final class EpcBatch {
+
+    private static final char SEPARATOR = '\t';
+
+    private static final String TRAILER = "#shard";
+
+    private final Path input;
+
+    private final Path output;
+
+    private final DuplicateFilter duplicateFilter;
+
+    private final DuplicateMode duplicateMode;
+
+    private final int shard;
+
+    private final int shards;
+
+    private final ShardMode shardMode;
+
+    private final Path checkpoint;
+
+    private final long checkpointInterval;
+
+    private EpcBatch(Builder builder) {
+        this.input = builder.input;
+        this.output = builder.output;
+        this.duplicateFilter = builder.duplicateFilter;
+        this.duplicateMode = builder.duplicateMode;
+        this.shard = builder.shard;
+        this.shards = builder.shards;
+        this.shardMode = builder.shardMode;
+        this.checkpoint = builder.checkpoint;
+        this.checkpointInterval = builder.checkpointInterval;
+    }
+
+    /**
+     * Runs a batch, or one shard of it, from the command line:
+     * <pre>
+     * java cc.dames.jepc.EpcBatch input output [shard shards [KEY_HASH|BYTE_RANGE]]
+     * </pre>
+     * @param args input and output file, optional shard index, number of shards and {@link ShardMode}
+     * @throws IOException if input can not be read or output can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 4 && args.length != 5) {
+            System.err.println("usage: EpcBatch input output [shard shards [KEY_HASH|BYTE_RANGE]]");
+            System.exit(2);
+        }
+        Builder builder = new Builder().withInput(Path.of(args[0])).withOutput(Path.of(args[1]));
+        if (args.length >= 4) {
+            builder.withShard(Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                    args.length == 5 ? ShardMode.valueOf(args[4]) : ShardMode.KEY_HASH);
+        }
+        EpcBatchResult result = builder.build().run();
+        System.out.println("rows " + result.getRows() + ", payloads " + result.getPayloads()
+                + ", duplicates " + result.getDuplicates() + ", errors " + result.getErrors());
+    }
+
+    /**
+     * Runs the batch. With a checkpoint file, a run that was interrupted resumes after its last checkpoint:
+     * output written after it is cut off and generated again, so every row is written exactly once.
+     * @return counters of the run
+     * @throws IOException if input can not be read or output can not be written
+     */
+    public EpcBatchResult run() throws IOException {
+        BatchCheckpoint state = checkpoint != null && Files.exists(checkpoint) ? BatchCheckpoint.read(checkpoint) : null;
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long start = 0;
+            long end = in.size();
+            if (shardMode == ShardMode.BYTE_RANGE) {
+                start = lineStart(in, split(in.size(), shard, shards));
+                end = lineStart(in, split(in.size(), shard + 1, shards));
+            }
+            if (state == null) {
+                state = new BatchCheckpoint();
+                state.inputOffset = start;
+            } else if (state.inputOffset < start || state.inputOffset > end) {
+                throw new EpcException("checkpoint " + checkpoint + " is not within shard " + shard);
+            }
+            if (out.size() < state.outputOffset) {
+                throw new EpcException("output " + output + " is shorter than its checkpoint");
+            }
+            out.truncate(state.outputOffset);
+            out.position(state.outputOffset);
+            if (duplicateFilter != null && state.inputOffset > start) {
+                refeed(in, start, state.inputOffset);
+            }
+            in.position(state.inputOffset);
+            LineReader reader = new LineReader(in, state.inputOffset);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            StringBuilder sb = new StringBuilder(512);
+            for (String line; reader.offset() < end && (line = reader.readLine()) != null; ) {
+                long row = state.row++;
+                if (owns(line)) {
+                    state.rows++;
+                    sb.setLength(0);
+                    BatchStatus status = process(row, line, sb);
+                    if (status == BatchStatus.OK) {
+                        state.payloads++;
+                    } else if (status == BatchStatus.DUPLICATE) {
+                        state.duplicates++;
+                    } else {
+                        state.errors++;
+                    }
+                    if (status != BatchStatus.DUPLICATE || duplicateMode == DuplicateMode.FLAG) {
+                        state.outputOffset += append(out, buffer, sb.append('\n'));
+                    }
+                }
+                state.inputOffset = reader.offset();
+                if (checkpoint != null && state.row % checkpointInterval == 0) {
+                    // output first, a checkpoint never points past synced output
+                    write(out, buffer);
+                    out.force(false);
+                    state.write(checkpoint);
+                }
+            }
+            if (shards > 1) {
+                sb.setLength(0);
+                sb.append(TRAILER).append(SEPARATOR).append(shardMode).append(SEPARATOR).append(shard).append(SEPARATOR).append(shards)
+                        .append(SEPARATOR).append(start).append(SEPARATOR).append(end)
+                        .append(SEPARATOR).append(state.row).append('\n');
+                append(out, buffer, sb);
+            }
+            write(out, buffer);
+            out.force(false);
+        }
+        if (checkpoint != null) {
+            Files.deleteIfExists(checkpoint);
+        }
+        return state.toResult();
+    }
+
+    /**
+     * Adds the payments of this shard before the checkpoint to the duplicate filter again, nothing is written
+     */
+    private void refeed(FileChannel in, long from, long to) throws IOException {
+        in.position(from);
+        LineReader reader = new LineReader(in, from);
+        StringBuilder sb = new StringBuilder(512);
+        for (String line; reader.offset() < to && (line = reader.readLine()) != null; ) {
+            if (owns(line)) {
+                sb.setLength(0);
+                process(0, line, sb);
+            }
+        }
+    }
+
+    /**
+     * @return true if the row belongs to the shard of this batch
+     */
+    private boolean owns(String line) {
+        if (shards == 1 || shardMode == ShardMode.BYTE_RANGE) {
+            return true;
+        }
+        if (duplicateFilter != null) {
+            // duplicates of a payment share its shard whatever their keys, rows that do not parse go by key
+            try {
+                long[] fingerprint = new long[2];
+                DuplicateFilter.fingerprint(EpcRecord.parse(line).getRequest(), fingerprint);
+                return Long.remainderUnsigned(fingerprint[0], shards) == shard;
+            } catch (EpcException e) {
+                // an error row, its key decides
+            }
+        }
+        return shard(key(line), shards) == shard;
+    }
+
+    /**
+     * @param key record key
+     * @param shards number of shards
+     * @return shard of the key, the same on every JVM
+     */
+    static int shard(CharSequence key, int shards) {
+        // FNV-1a over the chars with a final mix
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) Long.remainderUnsigned(h, shards);
+    }
+
+    private static CharSequence key(String line) {
+        int end = line.indexOf(SEPARATOR);
+        return end < 0 ? line : line.subSequence(0, end);
+    }
+
+    /**
+     * @return byte offset of the input where shard index of count starts, the input size for index count
+     */
+    static long split(long size, int index, int count) {
+        // size * index / count without overflow
+        return size / count * index + size % count * index / count;
+    }
+
+    /**
+     * @return offset of the first line starting at or after offset, the input size if there is none
+     */
+    static long lineStart(FileChannel in, long offset) throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        // a line starts at offset if the byte before is a line feed
+        for (long position = offset - 1; ; ) {
+            buffer.clear();
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                return in.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return number of bytes of the line
+     */
+    private static int append(FileChannel out, ByteBuffer buffer, CharSequence line) throws IOException {
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            write(out, buffer);
+        }
+        if (bytes.length > buffer.capacity()) {
+            write(out, ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+        return bytes.length;
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Merges the outputs of the shards of a batch into one output in input order, with the row numbers of the input
+     * @param shardOutputs outputs of all shards of the batch, in shard order
+     * @param output file to write, replaced if it exists
+     * @return number of lines written
+     * @throws IOException if a shard output can not be read or output can not be written
+     * @throws EpcException if a shard output is incomplete or the outputs are not the shards of one input in order
+     */
+    public static long merge(List<Path> shardOutputs, Path output) throws IOException {
+        ShardMode mode = ShardMode.KEY_HASH;
+        // input rows before each shard, byte ranges only
+        long[] rows = new long[shardOutputs.size()];
+        String[] first = null;
+        long offset = 0;
+        for (int shard = 0; shard < shardOutputs.size(); shard++) {
+            Path shardOutput = shardOutputs.get(shard);
+            String[] trailer = trailer(shardOutput);
+            if (trailer == null || trailer.length != 7) {
+                throw new EpcException("shard output " + shardOutput + " is incomplete");
+            }
+            if (first == null) {
+                first = trailer;
+                try {
+                    mode = ShardMode.valueOf(trailer[1]);
+                } catch (IllegalArgumentException e) {
+                    throw new EpcException("shard output " + shardOutput + " has a malformed line: " + trailer[1]);
+                }
+            }
+            if (!trailer[1].equals(first[1]) || number(trailer[2], shardOutput) != shard
+                    || number(trailer[3], shardOutput) != shardOutputs.size()) {
+                throw new EpcException("shard output " + shardOutput + " is not shard " + shard + " of "
+                        + shardOutputs.size() + " in mode " + mode);
+            }
+            if (mode == ShardMode.KEY_HASH) {
+                // every shard read the whole input
+                if (!trailer[5].equals(first[5]) || !trailer[6].equals(first[6])) {
+                    throw new EpcException("shard output " + shardOutput + " is not of the input of shard 0");
+                }
+            } else {
+                if (number(trailer[4], shardOutput) != offset) {
+                    throw new EpcException("shard output " + shardOutput + " does not start at input offset " + offset);
+                }
+                offset = number(trailer[5], shardOutput);
+                if (shard + 1 < rows.length) {
+                    rows[shard + 1] = rows[shard] + number(trailer[6], shardOutput);
+                }
+            }
+        }
+        return mode == ShardMode.KEY_HASH ? mergeRows(shardOutputs, output) : concat(shardOutputs, rows, output);
+    }
+
+    /**
+     * Merges shard outputs numbered by input row
+     */
+    private static long mergeRows(List<Path> shardOutputs, Path output) throws IOException {
+        List<BufferedReader> readers = new ArrayList<>();
+        // next line of each shard by row number
+        PriorityQueue<ShardLine> queue = new PriorityQueue<>(Math.max(1, shardOutputs.size()));
+        long lines = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (Path shardOutput : shardOutputs) {
+                BufferedReader reader = Files.newBufferedReader(shardOutput, StandardCharsets.UTF_8);
+                readers.add(reader);
+                ShardLine.next(reader, queue);
+            }
+            while (!queue.isEmpty()) {
+                ShardLine next = queue.poll();
+                writer.write(next.line);
+                writer.write('\n');
+                lines++;
+                ShardLine.next(next.reader, queue);
+            }
+        } finally {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Concatenates shard outputs of byte ranges, adding the input rows before each shard to its row numbers
+     */
+    private static long concat(List<Path> shardOutputs, long[] rows, Path output) throws IOException {
+        long lines = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (int shard = 0; shard < shardOutputs.size(); shard++) {
+                Path shardOutput = shardOutputs.get(shard);
+                try (BufferedReader reader = Files.newBufferedReader(shardOutput, StandardCharsets.UTF_8)) {
+                    for (String line = reader.readLine(); line != null && !line.startsWith(TRAILER + SEPARATOR);
+                         line = reader.readLine()) {
+                        int end = line.indexOf(SEPARATOR);
+                        if (end < 0) {
+                            end = line.length();
+                        }
+                        writer.write(Long.toString(rows[shard] + number(line.substring(0, end), shardOutput)));
+                        writer.write(line, end, line.length() - end);
+                        writer.write('\n');
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return fields of the last line of a shard output, null if it is not a trailer
+     */
+    private static String[] trailer(Path shardOutput) throws IOException {
+        try (FileChannel in = FileChannel.open(shardOutput, StandardOpenOption.READ)) {
+            // a trailer is short and ASCII, the tail of the output holds it
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(in.size(), 256));
+            long position = in.size() - buffer.capacity();
+            for (int read = 0; read >= 0 && buffer.hasRemaining(); ) {
+                read = in.read(buffer, position + buffer.position());
+            }
+            String tail = new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+            if (!tail.endsWith("\n")) {
+                return null;
+            }
+            int start = tail.lastIndexOf('\n', tail.length() - 2) + 1;
+            if (start == 0 && position > 0) {
+                return null;
+            }
+            String line = tail.substring(start, tail.length() - 1);
+            return line.startsWith(TRAILER + SEPARATOR) ? line.split(String.valueOf(SEPARATOR)) : null;
+        }
+    }
+
+    private static long number(String value, Path shardOutput) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new EpcException("shard output " + shardOutput + " has a malformed line: " + value);
+        }
+    }
+
+    /**
+     * Appends the output line of a row without line break
+     */
+    BatchStatus process(long row, String line, StringBuilder sb) {
+        sb.append(row).append(SEPARATOR);
+        EpcRecord record;
+        String payload;
+        try {
+            record = EpcRecord.parse(line);
+            payload = record.getRequest().build();
+        } catch (EpcException e) {
+            int end = line.indexOf(SEPARATOR);
+            sb.append(end < 0 ? line : line.substring(0, end)).append(SEPARATOR).append(BatchStatus.ERROR)
+                    .append(SEPARATOR).append(e.getField() == null ? "" : e.getField())
+                    .append(SEPARATOR).append(e.getMessage());
+            return BatchStatus.ERROR;
+        }
+        sb.append(record.getKey()).append(SEPARATOR);
+        if (duplicateFilter != null && !duplicateFilter.add(record.getRequest())) {
+            sb.append(BatchStatus.DUPLICATE);
+            return BatchStatus.DUPLICATE;
+        }
+        sb.append(BatchStatus.OK).append(SEPARATOR);
+        int end = payload.length();
+        while (end > 0 && payload.charAt(end - 1) == '\n') {
+            end--;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = payload.charAt(i);
+            sb.append(c == '\n' ? SEPARATOR : c);
+        }
+        return BatchStatus.OK;
+    }
+
+    private static final class ShardLine implements Comparable<ShardLine> {
+
+        private final long row;
+
+        private final String line;
+
+        private final BufferedReader reader;
+
+        private ShardLine(long row, String line, BufferedReader reader) {
+            this.row = row;
+            this.line = line;
+            this.reader = reader;
+        }
+
+        private static void next(BufferedReader reader, PriorityQueue<ShardLine> queue) throws IOException {
+            String line = reader.readLine();
+            if (line == null || line.startsWith(TRAILER + SEPARATOR)) {
+                return;
+            }
+            int end = line.indexOf(SEPARATOR);
+            try {
+                queue.add(new ShardLine(Long.parseLong(end < 0 ? line : line.substring(0, end)), line, reader));
+            } catch (NumberFormatException e) {
+                throw new EpcException("shard output line does not start with a row number: " + line);
+            }
+        }
+
+        @Override
+        public int compareTo(ShardLine other) {
+            return Long.compare(row, other.row);
+        }
+    }
+
+    public static class Builder {
+
+        private Path input;
+
+        private Path output;
+
+        private DuplicateFilter duplicateFilter;
+
+        private DuplicateMode duplicateMode = DuplicateMode.FLAG;
+
+        private int shard = 0;
+
+        private int shards = 1;
+
+        private ShardMode shardMode = ShardMode.KEY_HASH;
+
+        private Path checkpoint;
+
+        private long checkpointInterval = 100_000L;
+
+        /**
+         * @param value file of {@link EpcRecord} lines, UTF-8
+         * @return Builder object
+         */
+        public Builder withInput(Path value) {
+            this.input = value;
+            return this;
+        }
+
+        /**
+         * @param value file to write, replaced if it exists
+         * @return Builder object
+         */
+        public Builder withOutput(Path value) {
+            this.output = value;
+            return this;
+        }
+
+        /**
+         * Enables duplicate detection, optional. With {@link ShardMode#BYTE_RANGE} shards a payment is a duplicate
+         * only of earlier rows of its own shard.
+         * @param filter filter sized for the number of rows, used by one batch only
+         * @param mode flag or drop duplicates
+         * @return Builder object
+         */
+        public Builder withDuplicateFilter(DuplicateFilter filter, DuplicateMode mode) {
+            this.duplicateFilter = filter;
+            this.duplicateMode = mode == null ? DuplicateMode.FLAG : mode;
+            return this;
+        }
+
+        /**
+         * Processes only the rows of one shard, assigned by {@link ShardMode#KEY_HASH}, optional
+         * @param index shard of this node, 0 to count - 1
+         * @param count number of shards, the same on all nodes
+         * @return Builder object
+         */
+        public Builder withShard(int index, int count) {
+            return withShard(index, count, ShardMode.KEY_HASH);
+        }
+
+        /**
+         * Processes only the rows of one shard, optional
+         * @param index shard of this node, 0 to count - 1
+         * @param count number of shards, the same on all nodes
+         * @param mode assignment of rows to shards, the same on all nodes
+         * @return Builder object
+         */
+        public Builder withShard(int index, int count, ShardMode mode) {
+            if (count < 1 || index < 0 || index >= count) {
+                throw new EpcException("shard must be between 0 and " + (count - 1));
+            }
+            this.shard = index;
+            this.shards = count;
+            this.shardMode = mode == null ? ShardMode.KEY_HASH : mode;
+            return this;
+        }
+
+        /**
+         * Writes a checkpoint every interval input rows and resumes from it, optional
+         * @param file checkpoint file, one per output, deleted when the run completes
+         * @param interval input rows between checkpoints, default 100000
+         * @return Builder object
+         */
+        public Builder withCheckpoint(Path file, long interval) {
+            if (interval < 1) {
+                throw new EpcException("checkpoint interval must be positive");
+            }
+            this.checkpoint = file;
+            this.checkpointInterval = interval;
+            return this;
+        }
+
+        public EpcBatch build() {
+            if (input == null || output == null) {
+                throw new EpcException("input and output are mandatory");
+            }
+            return new EpcBatch(this);
+        }
+    }
+}
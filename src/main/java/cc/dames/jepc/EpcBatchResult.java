@@ -0,0 +1,50 @@
+package cc.dames.jepc;
+
+/**
+ * Counters of a run of {@link EpcBatch}
+ */
+public final class EpcBatchResult {
+
+    private final long rows;
+
+    private final long payloads;
+
+    private final long duplicates;
+
+    private final long errors;
+
+    EpcBatchResult(long rows, long payloads, long duplicates, long errors) {
+        this.rows = rows;
+        this.payloads = payloads;
+        this.duplicates = duplicates;
+        this.errors = errors;
+    }
+
+    /**
+     * @return number of input rows, of this shard only if sharded
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of payloads generated
+     */
+    public long getPayloads() {
+        return payloads;
+    }
+
+    /**
+     * @return number of duplicate rows, flagged or dropped
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return number of rows that could not be parsed or are invalid
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,41 @@
+package cc.dames.jepc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of {@link Epc.Builder#build()}, disabled by default.
+ * Enable with a JFR setting, e.g. {@code cc.dames.jepc.Build#enabled=true}
+ */
+@Name("cc.dames.jepc.Build")
+@Label("EPC Build")
+@Category("jEPC")
+@Description("Generation of an EPC payload")
+@Enabled(false)
+@StackTrace(false)
+final class EpcBuildEvent extends Event {
+
+    @Label("Version")
+    String version;
+
+    @Label("Character Encoding")
+    int characterEncoding;
+
+    @Label("Payload Size")
+    @DataAmount
+    int payloadSize;
+
+    @Label("Failed Field")
+    @Description("Builder field that failed validation")
+    String failedField;
+
+    @Label("Failure")
+    String failure;
+
+}
@@ -0,0 +1,294 @@
+package cc.dames.jepc;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static cc.dames.jepc.SepaUtils.*;
+
+/**
+ * Compact binary form of the {@link Epc.Builder} fields, to queue or persist payment requests.
+ * <pre>
+ * byte    format version
+ * byte    flags: version 001, CRLF, umlauts, amount present
+ * byte    character encoding
+ * varint  amount in cents, zigzag encoded, if present
+ * varint  SEPA purpose ordinal + 1, 0 if none
+ * packed  BIC, IBAN: length byte, 6 bits per character
+ * text    issuer, SCOR, intended use, message: varint length, UTF-8
+ * </pre>
+ * Empty and unset fields are both written as length 0 and left unset on decode.
+ * The amount is stored with bankers rounding to cents, as {@link Epc.Builder#build()} writes it.
+ * Encode and decode work on the caller's buffers without intermediate byte arrays.
+ */
+public final class EpcCodec {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_VERSION_001 = 1;
+
+    private static final int FLAG_CRLF = 1 << 1;
+
+    private static final int FLAG_UMLAUTS = 1 << 2;
+
+    private static final int FLAG_AMOUNT = 1 << 3;
+
+    private static final String PACKED_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    private static final SepaPurpose[] PURPOSES = SepaPurpose.values();
+
+    private EpcCodec() {
+    }
+
+    /**
+     * Writes the request at the position of target and advances it
+     * @param request fields to encode, not validated
+     * @param target buffer to write to
+     * @return number of bytes written
+     * @throws java.nio.BufferOverflowException if target has not enough space, the position is unchanged then,
+     * bytes after it may be overwritten
+     * @throws EpcException if a field can not be encoded, the position is unchanged then, bytes after it may be overwritten
+     */
+    public static int encode(Epc.Builder request, ByteBuffer target) {
+        int start = target.position();
+        try {
+            return put(request, target) - start;
+        } catch (RuntimeException e) {
+            target.position(start);
+            throw e;
+        }
+    }
+
+    private static int put(Epc.Builder request, ByteBuffer target) {
+        BigDecimal amount = request.getTransferAmount();
+        int flags = (request.getVersion() == Version.V001 ? FLAG_VERSION_001 : 0)
+                | (request.getLineFeed() == LineFeed.CRLF ? FLAG_CRLF : 0)
+                | (request.isUmlauts() ? FLAG_UMLAUTS : 0)
+                | (amount != null ? FLAG_AMOUNT : 0);
+        if (request.getCharacterEncoding() < 0 || request.getCharacterEncoding() > 0xFF) {
+            throw new EpcException("character encoding must be between 1 and 8", "characterEncoding");
+        }
+        target.put((byte) FORMAT_VERSION);
+        target.put((byte) flags);
+        target.put((byte) request.getCharacterEncoding());
+        if (amount != null) {
+            putVarLong(target, zigzag(cents(amount)));
+        }
+        putVarLong(target, request.getSepaPurpose() == null ? 0 : request.getSepaPurpose().ordinal() + 1);
+        putPacked(target, request.getBic(), "bic");
+        putPacked(target, request.getIban(), "iban");
+        putText(target, request.getIssuer());
+        putText(target, request.getScor());
+        putText(target, request.getIntendedUse());
+        putText(target, request.getMessage());
+        return target.position();
+    }
+
+    /**
+     * Reads a request at the position of source and advances it
+     * @param source buffer to read from
+     * @return request with the decoded fields
+     * @throws BufferUnderflowException if source ends within the request
+     * @throws EpcException if the request is malformed
+     */
+    public static Epc.Builder decode(ByteBuffer source) {
+        int formatVersion = source.get() & 0xFF;
+        if (formatVersion != FORMAT_VERSION) {
+            throw new EpcException("unsupported format version " + formatVersion);
+        }
+        int flags = source.get() & 0xFF;
+        Epc.Builder request = new Epc.Builder()
+                .withVersion((flags & FLAG_VERSION_001) != 0 ? Version.V001 : Version.V002)
+                .withLineFeed((flags & FLAG_CRLF) != 0 ? LineFeed.CRLF : LineFeed.LF)
+                .withUmlauts((flags & FLAG_UMLAUTS) != 0)
+                .withCharacterEncoding(source.get() & 0xFF);
+        if ((flags & FLAG_AMOUNT) != 0) {
+            long cents = getVarLong(source);
+            request.withTransferAmount(BigDecimal.valueOf((cents >>> 1) ^ -(cents & 1), 2));
+        }
+        long purpose = getVarLong(source);
+        if (purpose < 0 || purpose > PURPOSES.length) {
+            throw new EpcException("unknown SEPA purpose " + (purpose - 1), "sepaPurpose");
+        }
+        if (purpose > 0) {
+            request.withSepaPurpose(PURPOSES[(int) purpose - 1]);
+        }
+        String bic = getPacked(source);
+        if (strNotEmpty(bic)) {
+            request.withBIC(bic);
+        }
+        String iban = getPacked(source);
+        if (strNotEmpty(iban)) {
+            request.withIBAN(iban);
+        }
+        String issuer = getText(source);
+        if (strNotEmpty(issuer)) {
+            request.withIssuer(issuer);
+        }
+        String scor = getText(source);
+        if (strNotEmpty(scor)) {
+            request.withScor(scor);
+        }
+        String intendedUse = getText(source);
+        if (strNotEmpty(intendedUse)) {
+            request.withIntendedUse(intendedUse);
+        }
+        String message = getText(source);
+        if (strNotEmpty(message)) {
+            request.withMessage(message);
+        }
+        return request;
+    }
+
+    private static long cents(BigDecimal amount) {
+        try {
+            return bankersRounding(amount).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new EpcException("transfer amount is out of valid range, (0.01 - 999999999.99)", "transferAmount");
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void putVarLong(ByteBuffer target, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer source) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = source.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new EpcException("malformed varint");
+    }
+
+    private static void putPacked(ByteBuffer target, String value, String field) {
+        int length = value == null ? 0 : value.length();
+        if (length > 0xFF) {
+            throw new EpcException(field + " is too long to pack", field);
+        }
+        target.put((byte) length);
+        int bits = 0;
+        int pending = 0;
+        for (int i = 0; i < length; i++) {
+            int code = PACKED_CHARS.indexOf(value.charAt(i));
+            if (code < 0) {
+                throw new EpcException(field + " contains invalid character(s)", field);
+            }
+            bits = bits << 6 | code;
+            pending += 6;
+            if (pending >= 8) {
+                pending -= 8;
+                target.put((byte) (bits >>> pending));
+            }
+        }
+        if (pending > 0) {
+            target.put((byte) (bits << (8 - pending)));
+        }
+    }
+
+    private static String getPacked(ByteBuffer source) {
+        int length = source.get() & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        int bits = 0;
+        int pending = 0;
+        for (int i = 0; i < length; i++) {
+            if (pending < 6) {
+                bits = bits << 8 | (source.get() & 0xFF);
+                pending += 8;
+            }
+            pending -= 6;
+            int code = (bits >>> pending) & 0x3F;
+            if (code >= PACKED_CHARS.length()) {
+                throw new EpcException("malformed packed value");
+            }
+            chars[i] = PACKED_CHARS.charAt(code);
+        }
+        return new String(chars);
+    }
+
+    private static void putText(ByteBuffer target, String value) {
+        if (value == null) {
+            target.put((byte) 0);
+            return;
+        }
+        putVarLong(target, utf8Length(value));
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xC0 | c >>> 6));
+                target.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target.put((byte) (0xF0 | codePoint >>> 18));
+                target.put((byte) (0x80 | codePoint >>> 12 & 0x3F));
+                target.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+                target.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                target.put((byte) '?');
+            } else {
+                target.put((byte) (0xE0 | c >>> 12));
+                target.put((byte) (0x80 | c >>> 6 & 0x3F));
+                target.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String getText(ByteBuffer source) {
+        long length = getVarLong(source);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new EpcException("malformed text length " + length);
+        }
+        if (length > source.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int position = source.position();
+        String value;
+        if (source.hasArray()) {
+            value = new String(source.array(), source.arrayOffset() + position, (int) length, StandardCharsets.UTF_8);
+        } else {
+            value = StandardCharsets.UTF_8.decode(source.slice(position, (int) length)).toString();
+        }
+        source.position(position + (int) length);
+        return value;
+    }
+}
@@ -0,0 +1,258 @@
+package cc.dames.jepc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic payment requests for load and soak tests.
+ * Records are deterministic per seed and index, so a stream can be generated in parallel or resumed at any index.
+ * Valid records use IBANs of all {@link IbanCountry} formats and creditor references with check digits
+ * of {@link SepaUtils}, texts with and without umlauts up to the field limits.
+ * A configurable share of records is invalid with one defect each.
+ */
+public final class EpcDataGenerator {
+
+    private static final String[] WORDS = {
+            "Rechnung", "Miete", "Spende", "Beitrag", "Kundennummer", "Vertrag", "Lieferung", "Abo", "Monat",
+            "Januar", "Juni", "Zahlung", "Versicherung", "Strom", "Wasser", "Service", "Nr.", "2024", "10/2025",
+            "Rate", "Invoice", "Order", "Mitglied", "Kurs", "(Teil 2)", "A&B", "Ref:", "+", "Bestellung", "Konto"
+    };
+
+    private static final String[] UMLAUT_WORDS = {
+            "Gebühr", "Gemeinnützige", "Förderung", "Straße", "März", "Bürgerverein", "Schlüssel", "Übertrag", "Ärztekammer", "Öl"
+    };
+
+    private static final String[] LEGAL_FORMS = {"GmbH", "e.V.", "AG", "GmbH & Co. KG", "Stiftung", "eG"};
+
+    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private static final String INVALID_CHARS = "#@€$%*;_\"<>[]";
+
+    private static final IbanCountry[] COUNTRIES = IbanCountry.values();
+
+    private static final SepaPurpose[] PURPOSES = SepaPurpose.values();
+
+    private final long seed;
+
+    private final double invalidRatio;
+
+    private final double umlautRatio;
+
+    private EpcDataGenerator(Builder builder) {
+        this.seed = builder.seed;
+        this.invalidRatio = builder.invalidRatio;
+        this.umlautRatio = builder.umlautRatio;
+    }
+
+    /**
+     * @param index record index, 0 based
+     * @return record with key index, same for same seed and index
+     */
+    public EpcRecord record(long index) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+        boolean umlauts = random.nextDouble() < umlautRatio;
+        IbanCountry country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+
+        Epc.Builder request = new Epc.Builder()
+                .withUmlauts(umlauts)
+                .withIBAN(iban(random, country))
+                .withIssuer(text(random, 70, umlauts, true))
+                .withTransferAmount(BigDecimal.valueOf(cents(random), 2));
+        if (random.nextBoolean()) {
+            request.withBIC(bic(random, country));
+        }
+        if (random.nextInt(3) > 0) {
+            request.withSepaPurpose(PURPOSES[random.nextInt(PURPOSES.length)]);
+        }
+        if (random.nextBoolean()) {
+            request.withScor(SepaUtils.createSCOR(token(random, 1 + random.nextInt(21))));
+        } else {
+            request.withIntendedUse(text(random, 140, umlauts, false));
+        }
+        if (random.nextBoolean()) {
+            request.withMessage(text(random, 70, umlauts, false));
+        }
+        if (random.nextDouble() < invalidRatio) {
+            corrupt(random, request);
+        }
+        return new EpcRecord(Long.toString(index), request);
+    }
+
+    /**
+     * @param count number of records
+     * @return records 0 to count - 1, ordered, may be run in parallel
+     */
+    public Stream<EpcRecord> stream(long count) {
+        return LongStream.range(0, count).mapToObj(this::record);
+    }
+
+    /**
+     * Writes records as lines of {@link EpcRecord#format()}, UTF-8.
+     * The lines do not tell which records use umlauts, read them with umlauts allowed.
+     * @param file target file, replaced if it exists
+     * @param count number of records
+     * @throws IOException if the file can not be written
+     */
+    public void writeTo(Path file, long count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            Iterator<EpcRecord> records = stream(count).iterator();
+            while (records.hasNext()) {
+                writer.write(records.next().format());
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String iban(SplittableRandom random, IbanCountry country) {
+        StringBuilder bban = new StringBuilder(country.getLength());
+        for (int i = 4; i < country.getLength(); i++) {
+            bban.append(country.isLetterAt(i) ? (char) ('A' + random.nextInt(26)) : (char) ('0' + random.nextInt(10)));
+        }
+        return SepaUtils.createIBAN(country, bban.toString());
+    }
+
+    private static String bic(SplittableRandom random, IbanCountry country) {
+        StringBuilder bic = new StringBuilder(11);
+        for (int i = 0; i < 4; i++) {
+            bic.append((char) ('A' + random.nextInt(26)));
+        }
+        bic.append(country.name());
+        bic.append((char) ('A' + random.nextInt(26)));
+        bic.append((char) ('A' + random.nextInt(14)));
+        switch (random.nextInt(3)) {
+            case 0:
+                return bic.toString();
+            case 1:
+                return bic.append("XXX").toString();
+            default:
+                return bic.append(random.nextInt(10)).append(token(random, 2)).toString();
+        }
+    }
+
+    private static long cents(SplittableRandom random) {
+        // mostly small amounts, some up to the maximum
+        long max = (long) Math.pow(10, 2 + random.nextInt(10));
+        return 1 + random.nextLong(Math.min(max, AmountFormat.MAX_CENTS));
+    }
+
+    private static String token(SplittableRandom random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHANUMERIC.charAt(random.nextInt(ALPHANUMERIC.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String text(SplittableRandom random, int maxLength, boolean umlauts, boolean name) {
+        // a quarter of the texts close to the field limit
+        int length = random.nextInt(4) == 0 ? maxLength - random.nextInt(8) : 5 + random.nextInt(maxLength / 2);
+        String legalForm = name ? " " + LEGAL_FORMS[random.nextInt(LEGAL_FORMS.length)] : "";
+        int wordsLength = Math.max(1, length - legalForm.length());
+        StringBuilder sb = new StringBuilder(maxLength);
+        while (sb.length() < wordsLength) {
+            String word = umlauts && random.nextInt(4) == 0
+                    ? UMLAUT_WORDS[random.nextInt(UMLAUT_WORDS.length)]
+                    : WORDS[random.nextInt(WORDS.length)];
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(word);
+        }
+        sb.setLength(wordsLength);
+        return sb.toString().trim() + legalForm;
+    }
+
+    private static void corrupt(SplittableRandom random, Epc.Builder request) {
+        switch (random.nextInt(7)) {
+            case 0: {
+                // build() checks the IBAN format, a missing digit breaks it
+                String iban = request.getIban();
+                request.withIBAN(iban.substring(0, iban.length() - 1));
+                break;
+            }
+            case 1: {
+                // other check digits in range 02 - 98 never match
+                String scor = SepaUtils.createSCOR(token(random, 1 + random.nextInt(21)));
+                int checkSum = (Integer.parseInt(scor.substring(2, 4)) - 2 + 1 + random.nextInt(96)) % 97 + 2;
+                request.withIntendedUse("").withScor("RF" + (checkSum < 10 ? "0" : "") + checkSum + scor.substring(4));
+                break;
+            }
+            case 2:
+                request.withIssuer(insert(random, request.getIssuer(), INVALID_CHARS.charAt(random.nextInt(INVALID_CHARS.length()))));
+                break;
+            case 3: {
+                StringBuilder message = new StringBuilder(text(random, 70, false, false));
+                while (message.length() <= 70) {
+                    message.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                request.withMessage(message.toString());
+                break;
+            }
+            case 4:
+                request.withTransferAmount(random.nextBoolean() ? BigDecimal.ZERO : BigDecimal.valueOf(AmountFormat.MAX_CENTS + 1 + random.nextInt(1000), 2));
+                break;
+            case 5:
+                request.withIBAN("");
+                break;
+            default:
+                request.withScor(SepaUtils.createSCOR(token(random, 1 + random.nextInt(21)))).withIntendedUse("Spende");
+                break;
+        }
+    }
+
+    private static String insert(SplittableRandom random, String value, char c) {
+        int position = random.nextInt(value.length() + 1);
+        return value.substring(0, position) + c + value.substring(position);
+    }
+
+    public static class Builder {
+
+        private long seed;
+
+        private double invalidRatio = 0.01;
+
+        private double umlautRatio = 0.2;
+
+        /**
+         * @param value seed, same seed generates same records
+         * @return Builder object
+         */
+        public Builder withSeed(long value) {
+            this.seed = value;
+            return this;
+        }
+
+        /**
+         * @param value share of invalid records, 0.0 - 1.0, 0.01 default
+         * @return Builder object
+         */
+        public Builder withInvalidRatio(double value) {
+            this.invalidRatio = value;
+            return this;
+        }
+
+        /**
+         * @param value share of records with umlauts in their texts, 0.0 - 1.0, 0.2 default
+         * @return Builder object
+         */
+        public Builder withUmlautRatio(double value) {
+            this.umlautRatio = value;
+            return this;
+        }
+
+        public EpcDataGenerator build() {
+            if (invalidRatio < 0 || invalidRatio > 1 || umlautRatio < 0 || umlautRatio > 1) {
+                throw new EpcException("ratio must be between 0.0 and 1.0");
+            }
+            return new EpcDataGenerator(this);
+        }
+    }
+}
@@ -2,8 +2,26 @@ package cc.dames.jepc;
 
 public class EpcException extends RuntimeException {
 
+    private final String field;
+
     public EpcException(String message) {
+        this(message, null);
+    }
+
+    /**
+     * @param message description of the failure
+     * @param field name of the {@link Epc.Builder} field that failed validation, e.g. "iban"
+     */
+    public EpcException(String message, String field) {
         super(message);
+        this.field = field;
+    }
+
+    /**
+     * @return name of the {@link Epc.Builder} field that failed validation, null if not related to a field
+     */
+    public String getField() {
+        return field;
     }
 
 }
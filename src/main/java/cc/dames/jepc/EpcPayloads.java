@@ -0,0 +1,255 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+/**
+ * Keeps many encoded payloads in memory with their rows interned. Rows like BCD, version, character encoding,
+ * SCT, BIC, issuer and IBAN repeat across a batch; each distinct row including its line feed is stored once in
+ * a byte arena and a payload is a list of row ids, so a payload of repeated rows costs four bytes per row.
+ * Rows are looked up by open addressing over their ids. Payloads are read as views of the arena, without
+ * copies, e.g. to write them to a channel or to encode QR codes. At most 2 GB of distinct rows.
+ * Not thread-safe for adding, reading is safe once all payloads are added.
+ */
+public final class EpcPayloads {
+
+    private final ByteBuffer scratch = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+
+    private byte[] arena = new byte[1 << 12];
+
+    // row i is arena[rowOffsets[i]] to arena[rowOffsets[i + 1]]
+    private int[] rowOffsets = new int[257];
+
+    private int[] rowHashes = new int[256];
+
+    private int rowCount;
+
+    // row ids + 1 by open addressing, an empty slot is 0
+    private int[] table = new int[512];
+
+    // payload i has the row ids payloadRows[payloadOffsets[i]] to payloadRows[payloadOffsets[i + 1]]
+    private int[] payloadRows = new int[1 << 10];
+
+    private int[] payloadOffsets = new int[65];
+
+    private int size;
+
+    /**
+     * Adds the payload encoded with its character encoding, as {@link Epc.Builder#build(ByteBuffer)} writes it
+     * @param request payment request
+     * @return index of the payload
+     * @throws EpcException if the request is invalid or the payload exceeds {@link Epc#MAX_PAYLOAD_BYTES}
+     */
+    public int add(Epc.Builder request) {
+        scratch.clear();
+        try {
+            request.build(scratch);
+        } catch (BufferOverflowException e) {
+            throw new EpcException("payload exceeds " + Epc.MAX_PAYLOAD_BYTES + " bytes");
+        }
+        scratch.flip();
+        return add(scratch);
+    }
+
+    /**
+     * @param payload payload bytes from position to limit, rows separated by LF or CRLF, position is not changed
+     * @return index of the payload
+     */
+    public int add(ByteBuffer payload) {
+        if (size + 3 > payloadOffsets.length) {
+            payloadOffsets = Arrays.copyOf(payloadOffsets, 2 * payloadOffsets.length);
+        }
+        int start = payload.position();
+        int end = payload.limit();
+        for (int from = start, i = start; i < end; i++) {
+            if (payload.get(i) == '\n' || i == end - 1) {
+                if (payloadRows.length == payloadOffsets[size + 1]) {
+                    payloadRows = Arrays.copyOf(payloadRows, 2 * payloadRows.length);
+                }
+                payloadRows[payloadOffsets[size + 1]++] = intern(payload, from, i + 1);
+                from = i + 1;
+            }
+        }
+        size++;
+        payloadOffsets[size + 1] = payloadOffsets[size];
+        return size - 1;
+    }
+
+    /**
+     * @return number of payloads
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return bytes of the distinct rows, the payloads together are usually much larger
+     */
+    public long getRowBytes() {
+        return rowOffsets[rowCount];
+    }
+
+    /**
+     * @param index payload index
+     * @return size of the payload in bytes
+     */
+    public int getPayloadSize(int index) {
+        checkIndex(index);
+        int bytes = 0;
+        for (int i = payloadOffsets[index]; i < payloadOffsets[index + 1]; i++) {
+            bytes += rowOffsets[payloadRows[i] + 1] - rowOffsets[payloadRows[i]];
+        }
+        return bytes;
+    }
+
+    /**
+     * @param index payload index
+     * @return read-only views of the rows of the payload, in order
+     */
+    public ByteBuffer[] views(int index) {
+        checkIndex(index);
+        ByteBuffer[] views = new ByteBuffer[payloadOffsets[index + 1] - payloadOffsets[index]];
+        for (int i = 0; i < views.length; i++) {
+            int row = payloadRows[payloadOffsets[index] + i];
+            views[i] = ByteBuffer.wrap(arena, rowOffsets[row], rowOffsets[row + 1] - rowOffsets[row]).asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    /**
+     * Writes the payload to the channel with a gathering write of its rows
+     * @param index payload index
+     * @param out channel to write to, not closed
+     * @return number of bytes written
+     * @throws IOException if out fails
+     */
+    public long write(int index, GatheringByteChannel out) throws IOException {
+        ByteBuffer[] views = views(index);
+        long written = 0;
+        int first = 0;
+        while (first < views.length) {
+            written += out.write(views, first, views.length - first);
+            while (first < views.length && !views[first].hasRemaining()) {
+                first++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Puts the payload at the position of target and advances it, e.g. into the buffer of a QR encoder
+     * @param index payload index
+     * @param target buffer to write to
+     * @return number of bytes written
+     * @throws BufferOverflowException if target has not enough space, nothing is written then
+     */
+    public int get(int index, ByteBuffer target) {
+        int bytes = getPayloadSize(index);
+        if (target.remaining() < bytes) {
+            throw new BufferOverflowException();
+        }
+        for (int i = payloadOffsets[index]; i < payloadOffsets[index + 1]; i++) {
+            int row = payloadRows[i];
+            target.put(arena, rowOffsets[row], rowOffsets[row + 1] - rowOffsets[row]);
+        }
+        return bytes;
+    }
+
+    /**
+     * @param index payload index
+     * @return payload decoded with the character encoding of its row 3
+     */
+    public String getString(int index) {
+        ByteBuffer payload = ByteBuffer.allocate(getPayloadSize(index));
+        get(index, payload);
+        return EpcArchive.decode(payload.flip());
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("payload " + index + " of " + size);
+        }
+    }
+
+    /**
+     * @return id of the row, added if it is new
+     */
+    private int intern(ByteBuffer payload, int from, int to) {
+        int hash = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ payload.get(i)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                break;
+            }
+            if (rowHashes[id] == hash && equals(id, payload, from, to)) {
+                return id;
+            }
+        }
+        int length = to - from;
+        int offset = rowOffsets[rowCount];
+        if (offset + length > arena.length) {
+            if (offset + length < 0) {
+                throw new EpcException("rows exceed 2 GB");
+            }
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * arena.length, offset + length)));
+        }
+        if (rowCount == rowHashes.length) {
+            rowHashes = Arrays.copyOf(rowHashes, 2 * rowCount);
+            rowOffsets = Arrays.copyOf(rowOffsets, 2 * rowCount + 1);
+        }
+        payload.get(from, arena, offset, length);
+        rowOffsets[rowCount + 1] = offset + length;
+        rowHashes[rowCount] = hash;
+        rowCount++;
+        if (2 * rowCount > table.length) {
+            resize();
+        } else {
+            insert(rowCount - 1);
+        }
+        return rowCount - 1;
+    }
+
+    private boolean equals(int id, ByteBuffer payload, int from, int to) {
+        int offset = rowOffsets[id];
+        if (rowOffsets[id + 1] - offset != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (arena[offset++] != payload.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int id) {
+        int mask = table.length - 1;
+        int slot = rowHashes[id] & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private void resize() {
+        table = new int[2 * table.length];
+        for (int id = 0; id < rowCount; id++) {
+            insert(id);
+        }
+    }
+}
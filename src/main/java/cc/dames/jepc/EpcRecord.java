@@ -0,0 +1,125 @@
+package cc.dames.jepc;
+
+import java.math.BigDecimal;
+
+import static cc.dames.jepc.SepaUtils.*;
+
+/**
+ * Payment request with a key, e.g. the invoice id, as one line of tab-separated text:
+ * <pre>
+ * key  IBAN  BIC  issuer  amount  purpose  SCOR  intended use  message
+ * </pre>
+ * Empty columns are unset fields, trailing empty columns may be omitted.
+ * SEPA texts can not contain tabs or line breaks, so no quoting is needed.
+ */
+public final class EpcRecord {
+
+    private static final char SEPARATOR = '\t';
+
+    private static final int COLUMNS = 9;
+
+    private final String key;
+
+    private final Epc.Builder request;
+
+    public EpcRecord(String key, Epc.Builder request) {
+        this.key = key;
+        this.request = request;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Epc.Builder getRequest() {
+        return request;
+    }
+
+    /**
+     * @param line tab-separated columns without line break
+     * @return record with the parsed fields, not validated
+     */
+    public static EpcRecord parse(String line) {
+        String[] columns = new String[COLUMNS];
+        int start = 0;
+        for (int i = 0; i < COLUMNS; i++) {
+            int end = i == COLUMNS - 1 ? -1 : line.indexOf(SEPARATOR, start);
+            columns[i] = start > line.length() ? "" : line.substring(start, end < 0 ? line.length() : end);
+            start = end < 0 ? line.length() + 1 : end + 1;
+        }
+        if (columns[COLUMNS - 1].indexOf(SEPARATOR) >= 0) {
+            throw new EpcException("record has more than " + COLUMNS + " columns");
+        }
+        Epc.Builder request = new Epc.Builder();
+        if (!columns[1].isEmpty()) {
+            request.withIBAN(columns[1]);
+        }
+        if (!columns[2].isEmpty()) {
+            request.withBIC(columns[2]);
+        }
+        if (!columns[3].isEmpty()) {
+            request.withIssuer(columns[3]);
+        }
+        if (!columns[4].isEmpty()) {
+            try {
+                request.withTransferAmount(columns[4]);
+            } catch (NumberFormatException e) {
+                throw new EpcException("transfer amount is not a number", "transferAmount");
+            }
+        }
+        if (!columns[5].isEmpty()) {
+            try {
+                request.withSepaPurpose(SepaPurpose.valueOf(columns[5]));
+            } catch (IllegalArgumentException e) {
+                throw new EpcException("unknown SEPA purpose " + columns[5], "sepaPurpose");
+            }
+        }
+        if (!columns[6].isEmpty()) {
+            request.withScor(columns[6]);
+        }
+        if (!columns[7].isEmpty()) {
+            request.withIntendedUse(columns[7]);
+        }
+        if (!columns[8].isEmpty()) {
+            request.withMessage(columns[8]);
+        }
+        return new EpcRecord(columns[0], request);
+    }
+
+    /**
+     * @return tab-separated columns without line break
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder(128);
+        append(sb, key, "key");
+        append(sb.append(SEPARATOR), request.getIban(), "iban");
+        append(sb.append(SEPARATOR), request.getBic(), "bic");
+        append(sb.append(SEPARATOR), request.getIssuer(), "issuer");
+        BigDecimal amount = request.getTransferAmount();
+        sb.append(SEPARATOR).append(amount == null ? "" : amount.toPlainString());
+        SepaPurpose purpose = request.getSepaPurpose();
+        sb.append(SEPARATOR).append(purpose == null ? "" : purpose.name());
+        append(sb.append(SEPARATOR), request.getScor(), "scor");
+        append(sb.append(SEPARATOR), request.getIntendedUse(), "intendedUse");
+        append(sb.append(SEPARATOR), request.getMessage(), "message");
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String value, String field) {
+        if (strEmpty(value)) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == '\n' || c == '\r') {
+                throw new EpcException(field + " contains tab or line break", field);
+            }
+        }
+        sb.append(value);
+    }
+}
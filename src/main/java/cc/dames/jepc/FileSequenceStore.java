@@ -0,0 +1,103 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link SequenceStore} in a local file, holds the last leased number as decimal text of fixed width.
+ * Leases are serialized by an exclusive file lock across processes and are synced to disk before returning.
+ * The number is overwritten in place and never truncated, a crash can not leave an empty file.
+ */
+public final class FileSequenceStore implements SequenceStore {
+
+    // a file lock is held per JVM, threads of one JVM synchronize on the path
+    private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    // digits of Long.MAX_VALUE, the value is zero padded to this width followed by a line feed
+    private static final int WIDTH = 19;
+
+    private final Path file;
+
+    /**
+     * @param file file with the high-water mark, created with 0 if missing
+     */
+    public FileSequenceStore(Path file) {
+        this.file = file.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public long lease(int size) throws IOException {
+        if (size < 1) {
+            throw new EpcException("block size must be positive");
+        }
+        synchronized (MONITORS.computeIfAbsent(file, key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    long highWaterMark = read(channel);
+                    if (highWaterMark > Long.MAX_VALUE - size) {
+                        throw new EpcException("sequence exhausted");
+                    }
+                    write(channel, highWaterMark + size);
+                    return highWaterMark + 1;
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return last leased number, 0 if nothing was leased yet
+     * @throws IOException if the file can not be read
+     */
+    public long highWaterMark() throws IOException {
+        synchronized (MONITORS.computeIfAbsent(file, key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return read(channel);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private long read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        String value = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+        if (value.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new EpcException("sequence file " + file + " is corrupt");
+        }
+    }
+
+    /**
+     * Overwrites the value at offset 0. The file is locked by inode, so it is not replaced by a renamed temp file;
+     * the fixed width covers any shorter earlier content and the write stays within one disk sector.
+     */
+    private static void write(FileChannel channel, long value) throws IOException {
+        String digits = Long.toString(value);
+        ByteBuffer buffer = ByteBuffer.wrap(("0".repeat(WIDTH - digits.length()) + digits + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(true);
+    }
+}
@@ -0,0 +1,51 @@
+package cc.dames.jepc;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * Result of {@link IbanBulkValidator}, rows are numbered from 0 in input order
+ */
+public final class IbanBulkResult {
+
+    private final int rows;
+
+    private final BitSet valid;
+
+    private final SortedMap<Integer, IbanFailure> failures;
+
+    IbanBulkResult(int rows, BitSet valid, SortedMap<Integer, IbanFailure> failures) {
+        this.rows = rows;
+        this.valid = valid;
+        this.failures = Collections.unmodifiableSortedMap(failures);
+    }
+
+    /**
+     * @return number of rows validated
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return bit set, bit i is set if row i is a valid IBAN
+     */
+    public BitSet getValid() {
+        return (BitSet) valid.clone();
+    }
+
+    /**
+     * @return number of valid rows
+     */
+    public int getValidCount() {
+        return valid.cardinality();
+    }
+
+    /**
+     * @return failure reason by row of the invalid rows
+     */
+    public SortedMap<Integer, IbanFailure> getFailures() {
+        return failures;
+    }
+}
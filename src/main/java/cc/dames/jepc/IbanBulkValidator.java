@@ -0,0 +1,357 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Validates IBANs in bulk on ASCII bytes, rows are not decoded into strings.
+ * Rows are either separated by a delimiter or have a fixed width, blanks and line breaks
+ * within a row are ignored. Structure and checksum are checked like
+ * {@link SepaUtils#validateIBAN(String)}. The input is split into chunks on row boundaries
+ * which are validated in parallel. Optionally the national check digits are validated as well,
+ * see {@link NationalCheckDigits}.
+ */
+public final class IbanBulkValidator {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final long MAP_SIZE = 1L << 30;
+
+    private static final int MAX_IBAN_LENGTH = 34;
+
+    private IbanBulkValidator() {
+    }
+
+    /**
+     * @param buffer rows from position to limit, e.g. one IBAN per line
+     * @param delimiter row delimiter, e.g. '\n'
+     * @return valid rows and failure reasons
+     */
+    public static IbanBulkResult validateDelimited(ByteBuffer buffer, byte delimiter) {
+        return validateDelimited(buffer, delimiter, null, CHUNK_SIZE);
+    }
+
+    /**
+     * @param buffer rows from position to limit, e.g. one IBAN per line
+     * @param delimiter row delimiter, e.g. '\n'
+     * @param national national check digits to validate after the checksum
+     * @return valid rows and failure reasons
+     */
+    public static IbanBulkResult validateDelimited(ByteBuffer buffer, byte delimiter, NationalCheckDigits national) {
+        return validateDelimited(buffer, delimiter, national, CHUNK_SIZE);
+    }
+
+    /**
+     * @param buffer rows from position to limit, a last incomplete row is validated as well
+     * @param width row width in bytes, including padding and line break
+     * @return valid rows and failure reasons
+     */
+    public static IbanBulkResult validateFixedWidth(ByteBuffer buffer, int width) {
+        return validateFixedWidth(buffer, width, null, CHUNK_SIZE);
+    }
+
+    /**
+     * @param buffer rows from position to limit, a last incomplete row is validated as well
+     * @param width row width in bytes, including padding and line break
+     * @param national national check digits to validate after the checksum
+     * @return valid rows and failure reasons
+     */
+    public static IbanBulkResult validateFixedWidth(ByteBuffer buffer, int width, NationalCheckDigits national) {
+        return validateFixedWidth(buffer, width, national, CHUNK_SIZE);
+    }
+
+    /**
+     * Validates a memory-mapped file, see {@link #validateDelimited(ByteBuffer, byte)}
+     * @param file file to validate
+     * @param delimiter row delimiter, e.g. '\n'
+     * @return valid rows and failure reasons
+     * @throws IOException if the file can not be mapped
+     */
+    public static IbanBulkResult validateDelimited(Path file, byte delimiter) throws IOException {
+        return validateDelimited(file, delimiter, null, MAP_SIZE, CHUNK_SIZE);
+    }
+
+    /**
+     * Validates a memory-mapped file, see {@link #validateDelimited(ByteBuffer, byte, NationalCheckDigits)}
+     * @param file file to validate
+     * @param delimiter row delimiter, e.g. '\n'
+     * @param national national check digits to validate after the checksum
+     * @return valid rows and failure reasons
+     * @throws IOException if the file can not be mapped
+     */
+    public static IbanBulkResult validateDelimited(Path file, byte delimiter, NationalCheckDigits national) throws IOException {
+        return validateDelimited(file, delimiter, national, MAP_SIZE, CHUNK_SIZE);
+    }
+
+    /**
+     * Validates a memory-mapped file, see {@link #validateFixedWidth(ByteBuffer, int)}
+     * @param file file to validate
+     * @param width row width in bytes, including padding and line break
+     * @return valid rows and failure reasons
+     * @throws IOException if the file can not be mapped
+     */
+    public static IbanBulkResult validateFixedWidth(Path file, int width) throws IOException {
+        return validateFixedWidth(file, width, null, MAP_SIZE, CHUNK_SIZE);
+    }
+
+    /**
+     * Validates a memory-mapped file, see {@link #validateFixedWidth(ByteBuffer, int, NationalCheckDigits)}
+     * @param file file to validate
+     * @param width row width in bytes, including padding and line break
+     * @param national national check digits to validate after the checksum
+     * @return valid rows and failure reasons
+     * @throws IOException if the file can not be mapped
+     */
+    public static IbanBulkResult validateFixedWidth(Path file, int width, NationalCheckDigits national) throws IOException {
+        return validateFixedWidth(file, width, national, MAP_SIZE, CHUNK_SIZE);
+    }
+
+    static IbanBulkResult validateDelimited(ByteBuffer buffer, byte delimiter, NationalCheckDigits national, int chunkSize) {
+        Accumulator accumulator = new Accumulator();
+        accumulator.add(delimitedChunks(buffer.slice(), delimiter, national, chunkSize));
+        return accumulator.result();
+    }
+
+    static IbanBulkResult validateFixedWidth(ByteBuffer buffer, int width, NationalCheckDigits national, int chunkSize) {
+        checkWidth(width);
+        Accumulator accumulator = new Accumulator();
+        accumulator.add(fixedWidthChunks(buffer.slice(), width, national, chunkSize));
+        return accumulator.result();
+    }
+
+    static IbanBulkResult validateDelimited(Path file, byte delimiter, NationalCheckDigits national, long mapSize,
+                                            int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Accumulator accumulator = new Accumulator();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(mapSize, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int usable = (int) length;
+                if (position + length < size) {
+                    // end the window after its last delimiter, the next window starts with the following row
+                    while (usable > 0 && window.get(usable - 1) != delimiter) {
+                        usable--;
+                    }
+                    if (usable == 0) {
+                        throw new EpcException("row exceeds mapped window at offset " + position);
+                    }
+                }
+                accumulator.add(delimitedChunks(window.slice(0, usable), delimiter, national, chunkSize));
+                position += usable;
+            }
+            return accumulator.result();
+        }
+    }
+
+    static IbanBulkResult validateFixedWidth(Path file, int width, NationalCheckDigits national, long mapSize,
+                                             int chunkSize) throws IOException {
+        checkWidth(width);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Accumulator accumulator = new Accumulator();
+            long size = channel.size();
+            long windowSize = Math.max(1, mapSize / width) * width;
+            for (long position = 0; position < size; position += windowSize) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                accumulator.add(fixedWidthChunks(window, width, national, chunkSize));
+            }
+            return accumulator.result();
+        }
+    }
+
+    private static void checkWidth(int width) {
+        if (width < 1) {
+            throw new EpcException("row width must be positive");
+        }
+    }
+
+    private static Chunk[] delimitedChunks(ByteBuffer buffer, byte delimiter, NationalCheckDigits national, int chunkSize) {
+        int size = buffer.limit();
+        int count = (int) ((size + (long) chunkSize - 1) / chunkSize);
+        return IntStream.range(0, count).parallel().mapToObj(k -> {
+            int start = k * chunkSize;
+            int end = (int) Math.min(size, (long) start + chunkSize);
+            // a chunk validates the rows starting within it
+            int from = start;
+            if (k > 0) {
+                while (from < end && buffer.get(from - 1) != delimiter) {
+                    from++;
+                }
+            }
+            Chunk chunk = new Chunk(national);
+            while (from < end) {
+                int to = from;
+                while (to < size && buffer.get(to) != delimiter) {
+                    to++;
+                }
+                chunk.add(buffer, from, to);
+                from = to + 1;
+            }
+            return chunk;
+        }).toArray(Chunk[]::new);
+    }
+
+    private static Chunk[] fixedWidthChunks(ByteBuffer buffer, int width, NationalCheckDigits national, int chunkSize) {
+        int size = buffer.limit();
+        int rows = (int) ((size + (long) width - 1) / width);
+        int rowsPerChunk = Math.max(1, chunkSize / width);
+        int count = (rows + rowsPerChunk - 1) / rowsPerChunk;
+        return IntStream.range(0, count).parallel().mapToObj(k -> {
+            Chunk chunk = new Chunk(national);
+            int last = (int) Math.min(rows, (long) (k + 1) * rowsPerChunk);
+            for (int row = k * rowsPerChunk; row < last; row++) {
+                int from = row * width;
+                chunk.add(buffer, from, (int) Math.min(size, (long) from + width));
+            }
+            return chunk;
+        }).toArray(Chunk[]::new);
+    }
+
+    /**
+     * Rows of one chunk, numbered from 0 within the chunk
+     */
+    private static final class Chunk {
+
+        private final AsciiChars iban = new AsciiChars();
+
+        private final BitSet valid = new BitSet();
+
+        private final List<Integer> failedRows = new ArrayList<>();
+
+        private final List<IbanFailure> failures = new ArrayList<>();
+
+        private final NationalCheckDigits national;
+
+        private int rows;
+
+        Chunk(NationalCheckDigits national) {
+            this.national = national;
+        }
+
+        void add(ByteBuffer buffer, int from, int to) {
+            IbanFailure failure = iban.set(buffer, from, to) ? check(iban, national) : IbanFailure.LENGTH;
+            if (failure == null) {
+                valid.set(rows);
+            } else {
+                failedRows.add(rows);
+                failures.add(failure);
+            }
+            rows++;
+        }
+    }
+
+    private static IbanFailure check(AsciiChars iban, NationalCheckDigits national) {
+        if (iban.length() == 0) {
+            return IbanFailure.EMPTY;
+        }
+        if (iban.length() < 4) {
+            return IbanFailure.LENGTH;
+        }
+        IbanCountry country = IbanCountry.of(iban);
+        if (country == null) {
+            return IbanFailure.UNKNOWN_COUNTRY;
+        }
+        if (iban.length() != country.getLength()) {
+            return IbanFailure.LENGTH;
+        }
+        if (!country.matches(iban)) {
+            return IbanFailure.FORMAT;
+        }
+        if (SepaUtils.mod97(iban) != 1) {
+            return IbanFailure.CHECKSUM;
+        }
+        return national == null || national.validate(iban) ? null : IbanFailure.NATIONAL_CHECK_DIGITS;
+    }
+
+    /**
+     * Merges chunks in input order
+     */
+    private static final class Accumulator {
+
+        private final BitSet valid = new BitSet();
+
+        private final SortedMap<Integer, IbanFailure> failures = new TreeMap<>();
+
+        private int rows;
+
+        void add(Chunk[] chunks) {
+            for (Chunk chunk : chunks) {
+                if ((long) rows + chunk.rows > Integer.MAX_VALUE) {
+                    throw new EpcException("too many rows, max. " + Integer.MAX_VALUE);
+                }
+                for (int i = chunk.valid.nextSetBit(0); i >= 0; i = chunk.valid.nextSetBit(i + 1)) {
+                    valid.set(rows + i);
+                }
+                for (int i = 0; i < chunk.failedRows.size(); i++) {
+                    failures.put(rows + chunk.failedRows.get(i), chunk.failures.get(i));
+                }
+                rows += chunk.rows;
+            }
+        }
+
+        IbanBulkResult result() {
+            return new IbanBulkResult(rows, valid, failures);
+        }
+    }
+
+    /**
+     * Reusable view of a row without blanks, bytes are read as ISO 8859-1
+     */
+    private static final class AsciiChars implements CharSequence {
+
+        private final byte[] chars = new byte[MAX_IBAN_LENGTH];
+
+        private int length;
+
+        /**
+         * @return false if the row exceeds the maximum IBAN length
+         */
+        boolean set(ByteBuffer buffer, int from, int to) {
+            length = 0;
+            for (int i = from; i < to; i++) {
+                byte b = buffer.get(i);
+                if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                    continue;
+                }
+                if (length == chars.length) {
+                    return false;
+                }
+                chars[length++] = b;
+            }
+            return true;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (chars[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
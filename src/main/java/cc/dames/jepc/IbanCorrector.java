@@ -0,0 +1,136 @@
+package cc.dames.jepc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Correction suggestions for an IBAN with a single typing error: one wrong character or two swapped adjacent ones.
+ * Each character contributes its value times the weight of its position, a power of 10 modulo 97, to the checksum.
+ * A substitution changes the checksum by the difference of the values times the weight, so the one value that makes
+ * the checksum valid is solved for instead of trying every character. Candidates must match the {@link IbanCountry}
+ * format; the country code itself is not corrected.
+ */
+public final class IbanCorrector {
+
+    private IbanCorrector() {
+    }
+
+    // INVERSE[w] * w = 1 modulo 97
+    private static final int[] INVERSE = new int[97];
+
+    static {
+        for (int w = 1; w < 97; w++) {
+            for (int x = 1; x < 97; x++) {
+                if (w * x % 97 == 1) {
+                    INVERSE[w] = x;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param iban IBAN that fails {@link SepaUtils#validateIBAN(String)}, spaces are ignored
+     * @return valid IBANs that differ by one character or by a swap of adjacent characters, in order of position,
+     * empty if iban is valid, of unknown country or length, or has more than one character of the wrong type
+     */
+    public static List<String> suggest(String iban) {
+        List<String> suggestions = new ArrayList<>();
+        if (SepaUtils.strEmpty(iban)) {
+            return suggestions;
+        }
+        char[] chars = iban.replace(" ", "").toUpperCase().toCharArray();
+        IbanCountry country = IbanCountry.of(new String(chars, 0, Math.min(2, chars.length)));
+        if (country == null || chars.length != country.getLength()) {
+            return suggestions;
+        }
+        int wrongType = -1;
+        for (int i = 2; i < chars.length; i++) {
+            if (country.isLetterAt(i) ? !isLetter(chars[i]) : !isDigit(chars[i])) {
+                if (wrongType >= 0) {
+                    return suggestions;
+                }
+                wrongType = i;
+            }
+        }
+        if (wrongType >= 0) {
+            // the wrong character is the error, try every character of the right type there
+            char from = country.isLetterAt(wrongType) ? 'A' : '0';
+            char to = country.isLetterAt(wrongType) ? 'Z' : '9';
+            for (char c = from; c <= to; c++) {
+                chars[wrongType] = c;
+                if (SepaUtils.mod97(new String(chars)) == 1) {
+                    suggestions.add(new String(chars));
+                }
+            }
+            return suggestions;
+        }
+
+        int[] weights = weights(chars);
+        int remainder = 0;
+        for (int i = 0; i < chars.length; i++) {
+            remainder = (remainder + value(chars[i]) * weights[i]) % 97;
+        }
+        if (remainder == 1) {
+            return suggestions;
+        }
+        // the change of the checksum that makes it valid
+        int delta = (98 - remainder) % 97;
+
+        for (int i = 2; i < chars.length; i++) {
+            int value = value(chars[i]);
+            int candidate = (value + delta * INVERSE[weights[i]]) % 97;
+            boolean letter = country.isLetterAt(i);
+            if (letter ? candidate >= 10 && candidate <= 35 : candidate <= 9) {
+                suggestions.add(replace(chars, i, letter ? (char) ('A' + candidate - 10) : (char) ('0' + candidate)));
+            }
+        }
+        for (int i = 2; i < chars.length - 1; i++) {
+            if (chars[i] == chars[i + 1] || country.isLetterAt(i) != country.isLetterAt(i + 1)) {
+                continue;
+            }
+            int difference = value(chars[i + 1]) - value(chars[i]);
+            // a swap adds difference * (w[i] - w[i + 1])
+            if (Math.floorMod(difference * (weights[i] - weights[i + 1]), 97) == delta) {
+                char[] swapped = chars.clone();
+                swapped[i] = chars[i + 1];
+                swapped[i + 1] = chars[i];
+                suggestions.add(new String(swapped));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Weight of each position in the checksum, the first four characters are moved to the end,
+     * letters count as two digits
+     */
+    private static int[] weights(char[] chars) {
+        int[] weights = new int[chars.length];
+        int weight = 1;
+        for (int k = chars.length - 1; k >= 0; k--) {
+            int i = (k + 4) % chars.length;
+            weights[i] = weight;
+            weight = weight * (isLetter(chars[i]) ? 100 : 10) % 97;
+        }
+        return weights;
+    }
+
+    private static String replace(char[] chars, int index, char c) {
+        char[] replaced = chars.clone();
+        replaced[index] = c;
+        return new String(replaced);
+    }
+
+    private static int value(char c) {
+        return isDigit(c) ? c - '0' : c - 'A' + 10;
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,131 @@
+package cc.dames.jepc;
+
+/**
+ * IBAN formats of the SEPA countries, same formats as {@link SepaPatterns#IBAN_PATTERN}
+ * <a href="https://www.swift.com/standards/data-standards/iban-international-bank-account-number">IBAN Registry</a>
+ */
+public enum IbanCountry {
+
+    AT(0, 20),
+    BE(0, 16),
+    BG(4, 22),
+    CH(0, 21),
+    CY(0, 28),
+    CZ(0, 24),
+    DE(0, 22),
+    DK(0, 18),
+    EE(0, 20),
+    ES(0, 24),
+    FI(0, 18),
+    FO(0, 18),
+    FR(0, 27),
+    GB(4, 22),
+    GI(4, 23),
+    GR(0, 27),
+    HR(0, 21),
+    HU(0, 28),
+    IE(4, 22),
+    IS(0, 26),
+    IT(1, 27),
+    LI(0, 21),
+    LT(0, 20),
+    LU(0, 20),
+    LV(4, 21),
+    MC(0, 27),
+    MT(4, 31),
+    NL(4, 18),
+    NO(0, 15),
+    PL(0, 28),
+    PT(0, 25),
+    RO(4, 24),
+    SE(0, 24),
+    SI(0, 19),
+    SK(0, 24),
+    SM(1, 27);
+
+    private static final IbanCountry[] BY_CODE = new IbanCountry[26 * 26];
+
+    static {
+        for (IbanCountry country : values()) {
+            BY_CODE[index(country.name().charAt(0), country.name().charAt(1))] = country;
+        }
+    }
+
+    private final int letters; // letters at the start of the BBAN, after the check digits
+
+    private final int length;
+
+    IbanCountry(int letters, int length) {
+        this.letters = letters;
+        this.length = length;
+    }
+
+    /**
+     * @return number of letters following the check digits, e.g. 4 for the bank code of NL
+     */
+    public int getLetters() {
+        return letters;
+    }
+
+    /**
+     * @return length of the IBAN including country code and check digits
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @param index position in the IBAN
+     * @return true if the format requires a letter at this position, digit otherwise
+     */
+    public boolean isLetterAt(int index) {
+        return index < 2 || (index >= 4 && index < 4 + letters);
+    }
+
+    /**
+     * Checks the structure, not the checksum, case-insensitive like {@link SepaPatterns#IBAN_PATTERN}
+     * @param iban IBAN without spaces
+     * @return true if iban has the format of this country
+     */
+    public boolean matches(CharSequence iban) {
+        if (iban == null || iban.length() != length || of(iban) != this) {
+            return false;
+        }
+        for (int i = 2; i < length; i++) {
+            char c = iban.charAt(i);
+            if (isLetterAt(i) ? !isLetter(c) : c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param iban IBAN or prefix of an IBAN, case-insensitive
+     * @return country of the first two characters, null if not a known IBAN country
+     */
+    public static IbanCountry of(CharSequence iban) {
+        if (iban == null || iban.length() < 2) {
+            return null;
+        }
+        return of(iban.charAt(0), iban.charAt(1));
+    }
+
+    static IbanCountry of(char c0, char c1) {
+        // ASCII only, Character.toUpperCase maps e.g. the dotless i to I
+        c0 = c0 >= 'a' && c0 <= 'z' ? (char) (c0 - 32) : c0;
+        c1 = c1 >= 'a' && c1 <= 'z' ? (char) (c1 - 32) : c1;
+        if (c0 < 'A' || c0 > 'Z' || c1 < 'A' || c1 > 'Z') {
+            return null;
+        }
+        return BY_CODE[index(c0, c1)];
+    }
+
+    private static int index(char c0, char c1) {
+        return (c0 - 'A') * 26 + (c1 - 'A');
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -0,0 +1,24 @@
+package cc.dames.jepc;
+
+/**
+ * Reason an IBAN failed validation
+ */
+public enum IbanFailure {
+
+    EMPTY("IBAN is empty"),
+    UNKNOWN_COUNTRY("IBAN country is not supported"),
+    LENGTH("IBAN has invalid length"),
+    FORMAT("IBAN has invalid format"),
+    CHECKSUM("IBAN has invalid checksum"),
+    NATIONAL_CHECK_DIGITS("IBAN has invalid national check digits or bank code");
+
+    private final String description;
+
+    IbanFailure(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
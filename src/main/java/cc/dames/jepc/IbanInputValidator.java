@@ -0,0 +1,35 @@
+package cc.dames.jepc;
+
+/**
+ * Validates an IBAN while it is typed, same rules as {@link SepaUtils#validateIBAN(String)}, case-insensitive.
+ * The country is known after two letters, from then on every position is checked against its format.
+ */
+public final class IbanInputValidator extends ChecksumInputValidator {
+
+    @Override
+    boolean accepts(int position, char c) {
+        if (position < 2) {
+            return isLetter(c) && (position == 0 || IbanCountry.of(charAt(0), c) != null);
+        }
+        IbanCountry country = IbanCountry.of(charAt(0), charAt(1));
+        if (position >= country.getLength()) {
+            return false;
+        }
+        return country.isLetterAt(position) ? isLetter(c) : isDigit(c);
+    }
+
+    @Override
+    InputState state(int length, int remainder) {
+        if (length < 2 || length < IbanCountry.of(charAt(0), charAt(1)).getLength()) {
+            return InputState.INCOMPLETE;
+        }
+        return checksum(remainder) == 1 ? InputState.VALID : InputState.INVALID;
+    }
+
+    /**
+     * @return country of the input, null if not typed yet or invalid
+     */
+    public IbanCountry getCountry() {
+        return getState() != InputState.INVALID && length() >= 2 ? IbanCountry.of(charAt(0), charAt(1)) : null;
+    }
+}
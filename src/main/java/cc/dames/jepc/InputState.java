@@ -0,0 +1,23 @@
+package cc.dames.jepc;
+
+/**
+ * State of an input validated while typing
+ */
+public enum InputState {
+
+    /**
+     * can not become valid by appending characters
+     */
+    INVALID,
+
+    /**
+     * valid so far, not complete yet
+     */
+    INCOMPLETE,
+
+    /**
+     * complete and valid
+     */
+    VALID
+
+}
@@ -0,0 +1,37 @@
+package cc.dames.jepc;
+
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the patterns reachable as {@code SepaUtils.IBAN_PATTERN} etc., as before {@link SepaPatterns}.
+ * Fields of an interface are initialized on first access, so the patterns are still compiled only when used.
+ * @deprecated use the constants of {@link SepaPatterns}
+ */
+@Deprecated
+public interface LegacySepaPatterns {
+
+    /**
+     * @deprecated use {@link SepaPatterns#IBAN_PATTERN}
+     */
+    @Deprecated
+    Pattern IBAN_PATTERN = SepaPatterns.IBAN_PATTERN;
+
+    /**
+     * @deprecated use {@link SepaPatterns#SEPA_TEXT_PATTERN}
+     */
+    @Deprecated
+    Pattern SEPA_TEXT_PATTERN = SepaPatterns.SEPA_TEXT_PATTERN;
+
+    /**
+     * @deprecated use {@link SepaPatterns#SEPA_TEXT_UMLAUTS_PATTERN}
+     */
+    @Deprecated
+    Pattern SEPA_TEXT_UMLAUTS_PATTERN = SepaPatterns.SEPA_TEXT_UMLAUTS_PATTERN;
+
+    /**
+     * @deprecated use {@link SepaPatterns#BIC_REGEX_PATTERN}
+     */
+    @Deprecated
+    Pattern BIC_REGEX_PATTERN = SepaPatterns.BIC_REGEX_PATTERN;
+
+}
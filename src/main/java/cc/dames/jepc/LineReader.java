@@ -0,0 +1,73 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a channel and keeps the byte offset of the next line, to resume at a line boundary.
+ * A line ends with LF or CRLF, the line break is not returned.
+ */
+final class LineReader {
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    private byte[] line = new byte[512];
+
+    private long offset;
+
+    /**
+     * @param channel channel positioned at a line start
+     * @param offset byte offset of the channel position
+     */
+    LineReader(ReadableByteChannel channel, long offset) {
+        this.channel = channel;
+        this.offset = offset;
+        buffer.flip();
+    }
+
+    /**
+     * @return next line, null at the end of the channel
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    return length == 0 ? null : line(length);
+                }
+                continue;
+            }
+            byte b = buffer.get();
+            offset++;
+            if (b == '\n') {
+                return line(length);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, 2 * length);
+            }
+            line[length++] = b;
+        }
+    }
+
+    /**
+     * @return byte offset of the next line
+     */
+    long offset() {
+        return offset;
+    }
+
+    private String line(int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,402 @@
+package cc.dames.jepc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Validates the national check digits inside the BBAN of an IBAN, which the IBAN checksum does not cover.
+ * BE, ES, FI, FR, IT, MC, NO, PT and SM have fixed algorithms. German account numbers are checked with the method
+ * of their bank code, read from the bank code file of the Deutsche Bundesbank (Bankleitzahlendatei).
+ * Validation does not allocate, an instance is immutable and thread-safe.
+ */
+public final class NationalCheckDigits {
+
+    // Bundesbank file: bank code in columns 1-8, check digit method in columns 151-152
+    private static final int METHOD_COLUMN = 150;
+
+    // 1, 0, 5, 7 ... for 0-9 and A-Z at odd positions of the Italian CIN
+    private static final byte[] CIN_ODD = {1, 0, 5, 7, 9, 13, 15, 17, 19, 21, 2, 4, 18, 20, 11, 3, 6, 8, 12, 14, 16, 10, 22, 25, 24, 23};
+
+    private static final int[] ES_WEIGHTS = {1, 2, 4, 8, 5, 10, 9, 7, 3, 6};
+
+    private static final int[] NO_WEIGHTS = {5, 4, 3, 2, 7, 6, 5, 4, 3, 2};
+
+    private final int[] bankCodes;
+
+    private final byte[] methods;
+
+    private NationalCheckDigits(int[] bankCodes, byte[] methods) {
+        this.bankCodes = bankCodes;
+        this.methods = methods;
+    }
+
+    /**
+     * @param iban IBAN without spaces, with valid structure and checksum
+     * @return false if the national check digits are wrong or the German bank code is not in the bank code file,
+     * true otherwise, also for countries without national check digits and unsupported German methods,
+     * see {@link #isSupported(String)}
+     */
+    public boolean validate(CharSequence iban) {
+        IbanCountry country = IbanCountry.of(iban);
+        if (country == null || iban.length() != country.getLength()) {
+            return false;
+        }
+        switch (country) {
+            case BE:
+                return belgium(iban);
+            case DE:
+                return germany(iban);
+            case ES:
+                return spain(iban);
+            case FI:
+                return luhn(iban, 4, 18);
+            case FR:
+            case MC:
+                return france(iban);
+            case IT:
+            case SM:
+                return italy(iban);
+            case NO:
+                return norway(iban);
+            case PT:
+                return portugal(iban);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return number of German bank codes with a check digit method
+     */
+    public int getBankCodeCount() {
+        return bankCodes.length;
+    }
+
+    /**
+     * @param bankCode German bank code, 8 digits
+     * @return true if the bank code is known and its check digit method is implemented, so {@link #validate}
+     * checks its accounts; false if German accounts of the bank code pass unchecked or are rejected as unknown
+     * @throws EpcException if bankCode does not have 8 digits
+     */
+    public boolean isSupported(String bankCode) {
+        int index = Arrays.binarySearch(bankCodes, bankCode(bankCode));
+        return index >= 0 && GermanMethod.isSupported(methods[index] & 0xFF);
+    }
+
+    /**
+     * @param bankCode German bank code, 8 digits
+     * @return check digit method, e.g. "06", null if unknown
+     * @throws EpcException if bankCode does not have 8 digits
+     */
+    public String getMethod(String bankCode) {
+        int index = Arrays.binarySearch(bankCodes, bankCode(bankCode));
+        if (index < 0) {
+            return null;
+        }
+        int method = methods[index] & 0xFF;
+        return "" + Character.toUpperCase(Character.forDigit(method / 10, 36)) + (char) ('0' + method % 10);
+    }
+
+    private static boolean belgium(CharSequence iban) {
+        // first 10 digits of the BBAN modulo 97, 97 instead of 0
+        int remainder = 0;
+        for (int i = 4; i < 14; i++) {
+            remainder = (remainder * 10 + digit(iban, i)) % 97;
+        }
+        return (remainder == 0 ? 97 : remainder) == number(iban, 14, 16);
+    }
+
+    private static boolean spain(CharSequence iban) {
+        // bank and branch with two leading zeros, then the account
+        int first = 0;
+        for (int i = 0; i < 8; i++) {
+            first += digit(iban, 4 + i) * ES_WEIGHTS[i + 2];
+        }
+        int second = 0;
+        for (int i = 0; i < 10; i++) {
+            second += digit(iban, 14 + i) * ES_WEIGHTS[i];
+        }
+        return spainDigit(first) == digit(iban, 12) && spainDigit(second) == digit(iban, 13);
+    }
+
+    private static int spainDigit(int sum) {
+        int check = 11 - sum % 11;
+        return check == 11 ? 0 : check == 10 ? 1 : check;
+    }
+
+    private static boolean france(CharSequence iban) {
+        // RIB key: 97 - (89 bank + 15 branch + 3 account) mod 97, letters of the account count as digits
+        int bank = 0;
+        int branch = 0;
+        int account = 0;
+        for (int i = 4; i < 9; i++) {
+            bank = (bank * 10 + digit(iban, i)) % 97;
+        }
+        for (int i = 9; i < 14; i++) {
+            branch = (branch * 10 + digit(iban, i)) % 97;
+        }
+        for (int i = 14; i < 25; i++) {
+            char c = Character.toUpperCase(iban.charAt(i));
+            int value = c >= 'A' && c <= 'Z' ? "12345678912345678923456789".charAt(c - 'A') - '0' : c - '0';
+            account = (account * 10 + value) % 97;
+        }
+        return 97 - (89 * bank + 15 * branch + 3 * account) % 97 == number(iban, 25, 27);
+    }
+
+    private static boolean italy(CharSequence iban) {
+        // CIN letter over bank, branch and account, odd and even positions valued differently
+        int sum = 0;
+        for (int i = 5; i < 27; i++) {
+            char c = Character.toUpperCase(iban.charAt(i));
+            int value = c >= 'A' && c <= 'Z' ? c - 'A' : c - '0';
+            sum += (i - 5) % 2 == 0 ? CIN_ODD[value] : value;
+        }
+        return Character.toUpperCase(iban.charAt(4)) == 'A' + sum % 26;
+    }
+
+    private static boolean norway(CharSequence iban) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            sum += digit(iban, 4 + i) * NO_WEIGHTS[i];
+        }
+        int check = 11 - sum % 11;
+        return check != 10 && (check == 11 ? 0 : check) == digit(iban, 14);
+    }
+
+    private static boolean portugal(CharSequence iban) {
+        // ISO 7064 mod 97-10 over the first 19 digits of the NIB
+        int remainder = 0;
+        for (int i = 4; i < 23; i++) {
+            remainder = (remainder * 10 + digit(iban, i)) % 97;
+        }
+        return 98 - remainder * 100 % 97 == number(iban, 23, 25);
+    }
+
+    /**
+     * Modulus 10 with weights 2, 1 from the right and cross sums, the check digit is at to - 1
+     */
+    private static boolean luhn(CharSequence iban, int from, int to) {
+        int sum = 0;
+        for (int i = to - 2, weight = 2; i >= from; i--, weight = 3 - weight) {
+            int product = digit(iban, i) * weight;
+            sum += product / 10 + product % 10;
+        }
+        return (10 - sum % 10) % 10 == digit(iban, to - 1);
+    }
+
+    private boolean germany(CharSequence iban) {
+        if (bankCodes.length == 0) {
+            return true;
+        }
+        int index = Arrays.binarySearch(bankCodes, number(iban, 4, 12));
+        if (index < 0) {
+            return false;
+        }
+        return GermanMethod.validate(methods[index] & 0xFF, iban);
+    }
+
+    private static int number(CharSequence iban, int from, int to) {
+        int number = 0;
+        for (int i = from; i < to; i++) {
+            number = number * 10 + digit(iban, i);
+        }
+        return number;
+    }
+
+    static int digit(CharSequence iban, int index) {
+        return iban.charAt(index) - '0';
+    }
+
+    private static int bankCode(String bankCode) {
+        if (bankCode == null || bankCode.length() != 8 || !bankCode.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            throw new EpcException("bank code must have 8 digits");
+        }
+        return Integer.parseInt(bankCode);
+    }
+
+    /**
+     * Check digit methods of the Deutsche Bundesbank, the account number is at IBAN positions 12 to 21,
+     * position p of the account (1 to 10 from the left) is IBAN index 11 + p
+     */
+    static final class GermanMethod {
+
+        private GermanMethod() {
+        }
+
+        private static final int[] W_2_1 = {2, 1};
+
+        private static final int[] W_3_7_1 = {3, 7, 1};
+
+        private static final int[] W_7_3_1 = {7, 3, 1};
+
+        private static final int[] W_2_TO_7 = {2, 3, 4, 5, 6, 7};
+
+        private static final int[] W_2_TO_9 = {2, 3, 4, 5, 6, 7, 8, 9};
+
+        private static final int[] W_2_TO_10 = {2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        private static final int[] W_20 = {2, 3, 4, 5, 6, 7, 8, 9, 3};
+
+        private static final int[] W_2_TO_6 = {2, 3, 4, 5, 6};
+
+        private static final int[] W_38 = {2, 4, 8, 5, 10, 9};
+
+        /**
+         * @return true if the method is implemented, 09 is, it has no check digit
+         */
+        static boolean isSupported(int method) {
+            return method <= 11 || method == 20 || method == 32 || method == 33 || method == 38;
+        }
+
+        /**
+         * @return true if valid or the method is not supported, see {@link #isSupported(int)}
+         */
+        static boolean validate(int method, CharSequence iban) {
+            int check = digit(iban, 21);
+            switch (method) {
+                case 0:
+                    return mod10(iban, 1, W_2_1, true) == check;
+                case 1:
+                    return mod10(iban, 1, W_3_7_1, false) == check;
+                case 2:
+                    return mod11(iban, 1, W_2_TO_9, -1) == check;
+                case 3:
+                    return mod10(iban, 1, W_2_1, false) == check;
+                case 4:
+                    return mod11(iban, 1, W_2_TO_7, -1) == check;
+                case 5:
+                    return mod10(iban, 1, W_7_3_1, false) == check;
+                case 6:
+                    return mod11(iban, 1, W_2_TO_7, 0) == check;
+                case 7:
+                    return mod11(iban, 1, W_2_TO_10, -1) == check;
+                case 8:
+                    // accounts below 60000 have no check digit
+                    return number(iban, 12, 22) < 60000 || mod10(iban, 1, W_2_1, true) == check;
+                case 10:
+                    return mod11(iban, 1, W_2_TO_10, 0) == check;
+                case 11:
+                    return mod11(iban, 1, W_2_TO_10, 9) == check;
+                case 20:
+                    return mod11(iban, 1, W_20, 0) == check;
+                case 32:
+                    return mod11(iban, 4, W_2_TO_7, 0) == check;
+                case 33:
+                    return mod11(iban, 5, W_2_TO_6, 0) == check;
+                case 38:
+                    return mod11(iban, 4, W_38, 0) == check;
+                default:
+                    // 09 has no check digit, other methods are not supported
+                    return true;
+            }
+        }
+
+        /**
+         * Weights from position 9 down to first, repeated, check digit 10 - sum mod 10
+         */
+        private static int mod10(CharSequence iban, int first, int[] weights, boolean crossSum) {
+            int sum = 0;
+            for (int p = 9, w = 0; p >= first; p--, w = (w + 1) % weights.length) {
+                int product = digit(iban, 11 + p) * weights[w];
+                sum += crossSum ? product / 10 + product % 10 : product;
+            }
+            return (10 - sum % 10) % 10;
+        }
+
+        /**
+         * Weights from position 9 down to first, repeated, check digit 11 - sum mod 11, 0 for remainder 0
+         * @param remainderOne check digit for remainder 1, -1 if such an account is invalid
+         */
+        private static int mod11(CharSequence iban, int first, int[] weights, int remainderOne) {
+            int sum = 0;
+            for (int p = 9, w = 0; p >= first; p--, w = (w + 1) % weights.length) {
+                sum += digit(iban, 11 + p) * weights[w];
+            }
+            int remainder = sum % 11;
+            return remainder == 0 ? 0 : remainder == 1 ? remainderOne : 11 - remainder;
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<Integer, Byte> methods = new TreeMap<>();
+
+        private Path bankCodeFile;
+
+        /**
+         * @param value bank code file of the Deutsche Bundesbank, fixed width, ISO 8859-1
+         * @return Builder object
+         */
+        public Builder withBankCodeFile(Path value) {
+            this.bankCodeFile = value;
+            return this;
+        }
+
+        /**
+         * @param bankCode German bank code, 8 digits
+         * @param method check digit method, e.g. "06"
+         * @return Builder object
+         * @throws EpcException if bankCode does not have 8 digits or the method is unknown
+         */
+        public Builder withBankCode(String bankCode, String method) {
+            methods.putIfAbsent(bankCode(bankCode), method(method));
+            return this;
+        }
+
+        /**
+         * @return check digit validator
+         * @throws UncheckedIOException if the bank code file can not be read
+         */
+        public NationalCheckDigits build() {
+            if (bankCodeFile != null) {
+                load();
+            }
+            int[] bankCodes = new int[methods.size()];
+            byte[] methodArray = new byte[methods.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Byte> entry : methods.entrySet()) {
+                bankCodes[i] = entry.getKey();
+                methodArray[i++] = entry.getValue();
+            }
+            return new NationalCheckDigits(bankCodes, methodArray);
+        }
+
+        private void load() {
+            try (BufferedReader reader = Files.newBufferedReader(bankCodeFile, StandardCharsets.ISO_8859_1)) {
+                int lineNumber = 0;
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    if (line.length() < METHOD_COLUMN + 2) {
+                        throw new EpcException("bank code file line " + lineNumber + " is too short");
+                    }
+                    // branches repeat the bank code with the same method
+                    withBankCode(line.substring(0, 8), line.substring(METHOD_COLUMN, METHOD_COLUMN + 2));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("reading bank code file " + bankCodeFile + " failed", e);
+            }
+        }
+
+        private static byte method(String method) {
+            if (method == null || method.length() != 2) {
+                throw new EpcException("check digit method must have 2 characters");
+            }
+            int first = Character.digit(method.charAt(0), 36);
+            int second = Character.digit(method.charAt(1), 10);
+            if (first < 0 || first > 'E' - 'A' + 10 || second < 0) {
+                throw new EpcException("unknown check digit method " + method);
+            }
+            return (byte) (first * 10 + second);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package cc.dames.jepc;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decoder of rendered QR codes, to verify printed EPC codes against their payload.
+ * Reads module matrices and clean, axis-aligned images with a quiet zone, as written by a renderer;
+ * photos of codes are not supported. Errors are corrected by the Reed-Solomon codes.
+ * The methods are thread-safe, a print run can be verified in parallel.
+ */
+public final class QrDecoder {
+
+    private QrDecoder() {
+    }
+
+    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    /**
+     * @param image rendered QR code, dark modules on light background
+     * @param request payment request the code was rendered from
+     * @return true if the code decodes to the payload of request in its character encoding
+     */
+    public static boolean verify(BufferedImage image, Epc.Builder request) {
+        return verify(sample(image), request);
+    }
+
+    /**
+     * @param matrix modules of a QR code
+     * @param request payment request the code was generated from
+     * @return true if the code decodes to the payload of request in its character encoding
+     */
+    public static boolean verify(QrMatrix matrix, Epc.Builder request) {
+        ByteBuffer expected = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        try {
+            request.build(expected);
+            return Arrays.equals(decode(matrix), Arrays.copyOf(expected.array(), expected.position()));
+        } catch (BufferOverflowException | EpcException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param image rendered QR code, dark modules on light background
+     * @return content bytes
+     * @throws EpcException if no QR code is found or it can not be decoded
+     */
+    public static byte[] decode(BufferedImage image) {
+        return decode(sample(image));
+    }
+
+    /**
+     * @param matrix modules of a QR code
+     * @return content bytes, numeric and alphanumeric segments as ASCII
+     * @throws EpcException if the matrix is not a QR code or it can not be decoded
+     */
+    public static byte[] decode(QrMatrix matrix) {
+        int size = matrix.getSize();
+        if (size < 21 || size > 177 || (size - 17) % 4 != 0) {
+            throw new EpcException("QR code size " + size + " is invalid");
+        }
+        if (!isFinder(matrix, 0, 0) || !isFinder(matrix, size - 7, 0) || !isFinder(matrix, 0, size - 7)) {
+            throw new EpcException("QR code has no finder patterns");
+        }
+        QrVersion version = QrVersion.of((size - 17) / 4);
+        if (version.getVersion() >= 7) {
+            readVersion(matrix, version);
+        }
+        int format = readFormat(matrix, version);
+        QrLevel level = QrLevel.ofFormatBits(format >>> 3);
+        int mask = format & 7;
+
+        int[] dataModules = version.getDataModules();
+        int[] codewords = new int[version.totalCodewords()];
+        for (int i = 0; i < dataModules.length; i++) {
+            int index = dataModules[i];
+            if (matrix.get(index) ^ QrVersion.mask(mask, index % size, index / size)) {
+                codewords[i >>> 3] |= 0x80 >>> (i & 7);
+            }
+        }
+        return parse(correct(codewords, version, level), version);
+    }
+
+    /**
+     * Finds the code in a rendered image by the dark modules of its finder patterns and samples the module centers
+     * @param image rendered QR code, dark modules on light background, not rotated
+     * @return modules of the code
+     * @throws EpcException if there is no QR code
+     */
+    public static QrMatrix sample(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        int left = width;
+        int right = -1;
+        int top = height;
+        int bottom = -1;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (isDark(pixels[y * width + x])) {
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+        }
+        if (right < 0) {
+            throw new EpcException("image has no QR code");
+        }
+        // the top row of the top left finder pattern is 7 dark modules
+        int run = 0;
+        while (left + run <= right && isDark(pixels[top * width + left + run])) {
+            run++;
+        }
+        double moduleSize = run / 7.0;
+        int version = (int) Math.round(((right - left + 1) / moduleSize - 17) / 4);
+        if (version < QrVersion.MIN_VERSION || version > QrVersion.MAX_VERSION) {
+            throw new EpcException("image has no QR code");
+        }
+        int size = 17 + 4 * version;
+        double moduleWidth = (right - left + 1) / (double) size;
+        double moduleHeight = (bottom - top + 1) / (double) size;
+        QrMatrix matrix = new QrMatrix(size);
+        for (int y = 0; y < size; y++) {
+            int py = top + (int) ((y + 0.5) * moduleHeight);
+            for (int x = 0; x < size; x++) {
+                int px = left + (int) ((x + 0.5) * moduleWidth);
+                matrix.set(x, y, isDark(pixels[py * width + px]));
+            }
+        }
+        return matrix;
+    }
+
+    private static boolean isDark(int argb) {
+        int alpha = argb >>> 24;
+        int luma = ((argb >> 16 & 0xFF) * 299 + (argb >> 8 & 0xFF) * 587 + (argb & 0xFF) * 114) / 1000;
+        return alpha >= 128 && luma < 128;
+    }
+
+    private static boolean isFinder(QrMatrix matrix, int left, int top) {
+        for (int y = 0; y < 7; y++) {
+            for (int x = 0; x < 7; x++) {
+                int ring = Math.max(Math.abs(x - 3), Math.abs(y - 3));
+                if (matrix.get(left + x, top + y) != (ring != 2)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the version information against the size, either copy may have up to 3 bit errors
+     */
+    private static void readVersion(QrMatrix matrix, QrVersion version) {
+        int size = version.getSize();
+        int topRight = 0;
+        int bottomLeft = 0;
+        for (int i = 0; i < 18; i++) {
+            if (matrix.get(size - 11 + i % 3, i / 3)) {
+                topRight |= 1 << i;
+            }
+            if (matrix.get(i / 3, size - 11 + i % 3)) {
+                bottomLeft |= 1 << i;
+            }
+        }
+        int expected = QrVersion.versionBits(version.getVersion());
+        if (Integer.bitCount(topRight ^ expected) > 3 && Integer.bitCount(bottomLeft ^ expected) > 3) {
+            throw new EpcException("QR version information does not match the size");
+        }
+    }
+
+    /**
+     * @return 5 bits of level and mask of the nearest format information, either copy may have up to 3 bit errors
+     */
+    private static int readFormat(QrMatrix matrix, QrVersion version) {
+        int[][] modules = version.formatModules();
+        int first = 0;
+        int second = 0;
+        for (int i = 0; i < 15; i++) {
+            if (matrix.get(modules[i][0], modules[i][1])) {
+                first |= 1 << i;
+            }
+            if (matrix.get(modules[15 + i][0], modules[15 + i][1])) {
+                second |= 1 << i;
+            }
+        }
+        int best = -1;
+        int bestDistance = 4;
+        for (int data = 0; data < 32; data++) {
+            int bits = QrVersion.formatBits(QrLevel.ofFormatBits(data >>> 3), data & 7);
+            int distance = Math.min(Integer.bitCount(first ^ bits), Integer.bitCount(second ^ bits));
+            if (distance < bestDistance) {
+                best = data;
+                bestDistance = distance;
+            }
+        }
+        if (best < 0) {
+            throw new EpcException("QR format information is unreadable");
+        }
+        return best;
+    }
+
+    /**
+     * Deinterleaves the blocks and corrects them
+     * @return data codewords
+     */
+    private static byte[] correct(int[] codewords, QrVersion version, QrLevel level) {
+        int blocks = version.blocks(level);
+        int ecCount = version.ecCodewordsPerBlock(level);
+        int total = codewords.length;
+        int shortBlocks = blocks - total % blocks;
+        int shortData = total / blocks - ecCount;
+        int[][] blockCodewords = new int[blocks][];
+        for (int j = 0; j < blocks; j++) {
+            blockCodewords[j] = new int[(j < shortBlocks ? shortData : shortData + 1) + ecCount];
+        }
+        int index = 0;
+        for (int i = 0; i <= shortData; i++) {
+            for (int j = 0; j < blocks; j++) {
+                if (i < shortData || j >= shortBlocks) {
+                    blockCodewords[j][i] = codewords[index++];
+                }
+            }
+        }
+        for (int i = 0; i < ecCount; i++) {
+            for (int j = 0; j < blocks; j++) {
+                blockCodewords[j][blockCodewords[j].length - ecCount + i] = codewords[index++];
+            }
+        }
+        byte[] data = new byte[version.dataCodewords(level)];
+        int offset = 0;
+        for (int[] block : blockCodewords) {
+            QrReedSolomon.decode(block, ecCount);
+            for (int i = 0; i < block.length - ecCount; i++) {
+                data[offset++] = (byte) block[i];
+            }
+        }
+        return data;
+    }
+
+    private static byte[] parse(byte[] data, QrVersion version) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(data.length);
+        int v = version.getVersion();
+        int sizeClass = v <= 9 ? 0 : v <= 26 ? 1 : 2;
+        int[] position = {0};
+        while (data.length * 8 - position[0] >= 4) {
+            int mode = read(data, position, 4);
+            switch (mode) {
+                case 0:
+                    return content.toByteArray();
+                case 1: {
+                    int count = read(data, position, new int[]{10, 12, 14}[sizeClass]);
+                    for (; count >= 3; count -= 3) {
+                        appendDigits(content, read(data, position, 10), 3);
+                    }
+                    if (count > 0) {
+                        appendDigits(content, read(data, position, count == 2 ? 7 : 4), count);
+                    }
+                    break;
+                }
+                case 2: {
+                    int count = read(data, position, new int[]{9, 11, 13}[sizeClass]);
+                    for (; count >= 2; count -= 2) {
+                        int pair = read(data, position, 11);
+                        content.write(ALPHANUMERIC.charAt(pair / 45));
+                        content.write(ALPHANUMERIC.charAt(pair % 45));
+                    }
+                    if (count > 0) {
+                        content.write(ALPHANUMERIC.charAt(read(data, position, 6)));
+                    }
+                    break;
+                }
+                case 4: {
+                    int count = read(data, position, version.byteCountBits());
+                    for (int i = 0; i < count; i++) {
+                        content.write(read(data, position, 8));
+                    }
+                    break;
+                }
+                case 7: {
+                    // ECI designator, the bytes are returned as they are
+                    int first = read(data, position, 8);
+                    if ((first & 0x80) != 0) {
+                        read(data, position, (first & 0x40) == 0 ? 8 : 16);
+                    }
+                    break;
+                }
+                case 3:
+                    // structured append header
+                    read(data, position, 16);
+                    break;
+                case 5:
+                    break;
+                case 9:
+                    read(data, position, 8);
+                    break;
+                default:
+                    throw new EpcException("QR mode " + mode + " is not supported");
+            }
+        }
+        return content.toByteArray();
+    }
+
+    private static void appendDigits(ByteArrayOutputStream content, int value, int digits) {
+        for (int divisor = digits == 3 ? 100 : digits == 2 ? 10 : 1; divisor > 0; divisor /= 10) {
+            content.write('0' + value / divisor % 10);
+        }
+    }
+
+    private static int read(byte[] data, int[] position, int bits) {
+        if (position[0] + bits > data.length * 8) {
+            throw new EpcException("QR data is truncated");
+        }
+        int value = 0;
+        for (int i = 0; i < bits; i++, position[0]++) {
+            value = value << 1 | (data[position[0] >>> 3] >>> (7 - (position[0] & 7)) & 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,246 @@
+package cc.dames.jepc;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoder of QR codes in byte mode, the mode of EPC payloads. Chooses the smallest version that fits
+ * and the mask with the lowest penalty as specified in ISO/IEC 18004. The methods are thread-safe.
+ */
+public final class QrEncoder {
+
+    private QrEncoder() {
+    }
+
+    /**
+     * Encodes the payload with error correction level M, as required by the EPC guidelines
+     * @param request payment request
+     * @return modules of the QR code, version 13 at most
+     * @throws EpcException if the request is invalid or the payload exceeds {@link Epc#MAX_PAYLOAD_BYTES}
+     */
+    public static QrMatrix encode(Epc.Builder request) {
+        ByteBuffer payload = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        try {
+            request.build(payload);
+        } catch (BufferOverflowException e) {
+            throw new EpcException("payload exceeds " + Epc.MAX_PAYLOAD_BYTES + " bytes");
+        }
+        return encode(payload.array(), 0, payload.position(), QrLevel.M);
+    }
+
+    /**
+     * @param data content bytes
+     * @param level error correction level
+     * @return modules of the QR code
+     * @throws EpcException if data does not fit into version 40
+     */
+    public static QrMatrix encode(byte[] data, QrLevel level) {
+        return encode(data, 0, data.length, level);
+    }
+
+    static QrMatrix encode(byte[] data, int offset, int length, QrLevel level) {
+        QrVersion version = null;
+        for (int v = QrVersion.MIN_VERSION; v <= QrVersion.MAX_VERSION; v++) {
+            QrVersion candidate = QrVersion.of(v);
+            if (4 + candidate.byteCountBits() + 8 * length <= 8 * candidate.dataCodewords(level)) {
+                version = candidate;
+                break;
+            }
+        }
+        if (version == null) {
+            throw new EpcException("data of " + length + " bytes does not fit into a QR code");
+        }
+        byte[] codewords = interleave(dataCodewords(data, offset, length, version, level), version, level);
+
+        QrMatrix best = null;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            QrMatrix matrix = place(codewords, version, level, mask);
+            int penalty = penalty(matrix);
+            if (penalty < bestPenalty) {
+                best = matrix;
+                bestPenalty = penalty;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Mode, count, data, terminator and pad codewords
+     */
+    private static byte[] dataCodewords(byte[] data, int offset, int length, QrVersion version, QrLevel level) {
+        byte[] codewords = new byte[version.dataCodewords(level)];
+        int countBits = version.byteCountBits();
+        // 4 bits mode 0100, the count, then the bytes shifted by 4 + countBits
+        long header = (4L << countBits | length);
+        int headerBits = 4 + countBits;
+        int shift = headerBits % 8;
+        int position = 0;
+        for (int bits = headerBits; bits >= 8; bits -= 8) {
+            codewords[position++] = (byte) (header >>> (bits - 8));
+        }
+        int carry = (int) (header & ((1 << shift) - 1));
+        for (int i = offset; i < offset + length; i++) {
+            int b = data[i] & 0xFF;
+            codewords[position++] = (byte) (carry << (8 - shift) | b >>> shift);
+            carry = b & ((1 << shift) - 1);
+        }
+        // the rest of the carry and the terminator fit into one codeword, if any is left
+        if (position < codewords.length) {
+            codewords[position++] = (byte) (carry << (8 - shift));
+        }
+        for (int pad = 0xEC; position < codewords.length; position++, pad ^= 0xEC ^ 0x11) {
+            codewords[position] = (byte) pad;
+        }
+        return codewords;
+    }
+
+    private static byte[] interleave(byte[] data, QrVersion version, QrLevel level) {
+        int blocks = version.blocks(level);
+        int ecCount = version.ecCodewordsPerBlock(level);
+        int total = version.totalCodewords();
+        int shortBlocks = blocks - total % blocks;
+        int shortData = total / blocks - ecCount;
+        byte[][] ec = new byte[blocks][];
+        int[] offsets = new int[blocks];
+        for (int j = 0, offset = 0; j < blocks; j++) {
+            int length = j < shortBlocks ? shortData : shortData + 1;
+            offsets[j] = offset;
+            ec[j] = QrReedSolomon.encode(data, offset, length, ecCount);
+            offset += length;
+        }
+        byte[] codewords = new byte[total];
+        int index = 0;
+        for (int i = 0; i <= shortData; i++) {
+            for (int j = 0; j < blocks; j++) {
+                if (i < shortData || j >= shortBlocks) {
+                    codewords[index++] = data[offsets[j] + i];
+                }
+            }
+        }
+        for (int i = 0; i < ecCount; i++) {
+            for (int j = 0; j < blocks; j++) {
+                codewords[index++] = ec[j][i];
+            }
+        }
+        return codewords;
+    }
+
+    private static QrMatrix place(byte[] codewords, QrVersion version, QrLevel level, int mask) {
+        int size = version.getSize();
+        QrMatrix matrix = new QrMatrix(size);
+        for (int i = 0; i < size; i++) {
+            matrix.set(6, i, i % 2 == 0);
+            matrix.set(i, 6, i % 2 == 0);
+        }
+        finder(matrix, 0, 0);
+        finder(matrix, size - 7, 0);
+        finder(matrix, 0, size - 7);
+        int[] positions = version.alignmentPositions();
+        for (int i = 0; i < positions.length; i++) {
+            for (int j = 0; j < positions.length; j++) {
+                if ((i == 0 && j == 0) || (i == 0 && j == positions.length - 1) || (i == positions.length - 1 && j == 0)) {
+                    continue;
+                }
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        matrix.set(positions[i] + dx, positions[j] + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+                    }
+                }
+            }
+        }
+        int format = QrVersion.formatBits(level, mask);
+        int[][] formatModules = version.formatModules();
+        for (int i = 0; i < 30; i++) {
+            matrix.set(formatModules[i][0], formatModules[i][1], (format >>> (i % 15) & 1) != 0);
+        }
+        matrix.set(8, size - 8, true);
+        if (version.getVersion() >= 7) {
+            int bits = QrVersion.versionBits(version.getVersion());
+            for (int i = 0; i < 18; i++) {
+                boolean dark = (bits >>> i & 1) != 0;
+                matrix.set(size - 11 + i % 3, i / 3, dark);
+                matrix.set(i / 3, size - 11 + i % 3, dark);
+            }
+        }
+        int[] dataModules = version.getDataModules();
+        for (int i = 0; i < dataModules.length; i++) {
+            matrix.set(dataModules[i], (codewords[i >>> 3] >>> (7 - (i & 7)) & 1) != 0);
+        }
+        // the mask applies to the remainder bits as well
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (!version.isFunction(x, y) && QrVersion.mask(mask, x, y)) {
+                    matrix.set(x, y, !matrix.get(x, y));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static void finder(QrMatrix matrix, int left, int top) {
+        int size = matrix.getSize();
+        for (int dy = -1; dy <= 7; dy++) {
+            for (int dx = -1; dx <= 7; dx++) {
+                int x = left + dx;
+                int y = top + dy;
+                if (x >= 0 && x < size && y >= 0 && y < size) {
+                    int ring = Math.max(Math.abs(dx - 3), Math.abs(dy - 3));
+                    // separator (ring 4) and ring 2 are light
+                    matrix.set(x, y, ring != 2 && ring != 4);
+                }
+            }
+        }
+    }
+
+    /**
+     * Penalty of the mask evaluation: runs of 5 and more, 2x2 blocks, finder-like patterns and dark proportion
+     */
+    static int penalty(QrMatrix matrix) {
+        int size = matrix.getSize();
+        int penalty = 0;
+        int dark = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                int run = 0;
+                boolean color = false;
+                int pattern = 0;
+                for (int j = 0; j < size; j++) {
+                    boolean module = pass == 0 ? matrix.get(j, i) : matrix.get(i, j);
+                    if (j > 0 && module == color) {
+                        run++;
+                    } else {
+                        if (run >= 5) {
+                            penalty += run - 2;
+                        }
+                        color = module;
+                        run = 1;
+                    }
+                    // 1011101 with 0000 on either side, within the row or column
+                    pattern = (pattern << 1 | (module ? 1 : 0)) & 0x7FF;
+                    if (j >= 10 && (pattern == 0x05D || pattern == 0x5D0)) {
+                        penalty += 40;
+                    }
+                }
+                if (run >= 5) {
+                    penalty += run - 2;
+                }
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean module = matrix.get(x, y);
+                if (module) {
+                    dark++;
+                }
+                if (x < size - 1 && y < size - 1 && module == matrix.get(x + 1, y)
+                        && module == matrix.get(x, y + 1) && module == matrix.get(x + 1, y + 1)) {
+                    penalty += 3;
+                }
+            }
+        }
+        int total = size * size;
+        // deviation from 50% dark in steps of 5%
+        return penalty + Math.abs(dark * 20 - total * 10) / total * 10;
+    }
+}
@@ -0,0 +1,49 @@
+package cc.dames.jepc;
+
+/**
+ * Error correction level of a QR code, the EPC guidelines require {@link #M}
+ */
+public enum QrLevel {
+
+    /**
+     * recovers about 7% of the codewords
+     */
+    L(1),
+
+    /**
+     * recovers about 15% of the codewords
+     */
+    M(0),
+
+    /**
+     * recovers about 25% of the codewords
+     */
+    Q(3),
+
+    /**
+     * recovers about 30% of the codewords
+     */
+    H(2);
+
+    private final int formatBits;
+
+    QrLevel(int formatBits) {
+        this.formatBits = formatBits;
+    }
+
+    /**
+     * @return the two bits of the level in the format information
+     */
+    int getFormatBits() {
+        return formatBits;
+    }
+
+    static QrLevel ofFormatBits(int bits) {
+        for (QrLevel level : values()) {
+            if (level.formatBits == bits) {
+                return level;
+            }
+        }
+        throw new EpcException("invalid error correction level " + bits);
+    }
+}
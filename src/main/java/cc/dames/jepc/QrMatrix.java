@@ -0,0 +1,83 @@
+package cc.dames.jepc;
+
+import java.util.Arrays;
+
+/**
+ * Square matrix of QR code modules without quiet zone, true is dark. Module x, y is column x of row y.
+ */
+public final class QrMatrix {
+
+    private final int size;
+
+    private final boolean[] modules;
+
+    QrMatrix(int size) {
+        this.size = size;
+        this.modules = new boolean[size * size];
+    }
+
+    /**
+     * @param modules rows of modules, true is dark
+     * @return matrix with a copy of the modules
+     */
+    public static QrMatrix of(boolean[][] modules) {
+        QrMatrix matrix = new QrMatrix(modules.length);
+        for (int y = 0; y < modules.length; y++) {
+            if (modules[y].length != modules.length) {
+                throw new EpcException("QR matrix must be square");
+            }
+            System.arraycopy(modules[y], 0, matrix.modules, y * matrix.size, matrix.size);
+        }
+        return matrix;
+    }
+
+    /**
+     * @return number of modules per side, 21 for version 1 up to 177 for version 40
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param x column
+     * @param y row
+     * @return true if the module is dark
+     */
+    public boolean get(int x, int y) {
+        return modules[y * size + x];
+    }
+
+    void set(int x, int y, boolean dark) {
+        modules[y * size + x] = dark;
+    }
+
+    boolean get(int index) {
+        return modules[index];
+    }
+
+    void set(int index, boolean dark) {
+        modules[index] = dark;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof QrMatrix && Arrays.equals(modules, ((QrMatrix) o).modules);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(modules);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * (2 * size + 1));
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                sb.append(get(x, y) ? "##" : "  ");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,188 @@
+package cc.dames.jepc;
+
+/**
+ * Reed-Solomon codes of QR codes over GF(256) with the polynomial x^8 + x^4 + x^3 + x^2 + 1,
+ * the generator has the roots 1, a, a^2 ... of the primitive element a = 2.
+ * A block is a polynomial with the first codeword as highest coefficient.
+ */
+final class QrReedSolomon {
+
+    private QrReedSolomon() {
+    }
+
+    private static final int[] EXP = new int[512];
+
+    private static final int[] LOG = new int[256];
+
+    // generator polynomials by number of error correction codewords, highest coefficient (1) omitted,
+    // all computed up front so threads only ever read them
+    private static final int[][] GENERATORS = new int[69][];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            EXP[i + 255] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= 0x11D;
+            }
+        }
+        for (int ecCount = 1; ecCount < GENERATORS.length; ecCount++) {
+            GENERATORS[ecCount] = generator(ecCount);
+        }
+    }
+
+    static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    private static int divide(int a, int b) {
+        return a == 0 ? 0 : EXP[LOG[a] + 255 - LOG[b]];
+    }
+
+    /**
+     * @param data data codewords
+     * @param offset first data codeword of the block
+     * @param length number of data codewords of the block
+     * @param ecCount number of error correction codewords
+     * @return error correction codewords
+     */
+    static byte[] encode(byte[] data, int offset, int length, int ecCount) {
+        int[] generator = GENERATORS[ecCount];
+        byte[] remainder = new byte[ecCount];
+        for (int i = offset; i < offset + length; i++) {
+            int factor = (data[i] ^ remainder[0]) & 0xFF;
+            System.arraycopy(remainder, 1, remainder, 0, ecCount - 1);
+            remainder[ecCount - 1] = 0;
+            for (int j = 0; j < ecCount; j++) {
+                remainder[j] ^= (byte) multiply(generator[j], factor);
+            }
+        }
+        return remainder;
+    }
+
+    /**
+     * Corrects the block in place
+     * @param block data followed by error correction codewords
+     * @param ecCount number of error correction codewords
+     * @return number of corrected codewords
+     * @throws EpcException if the block has more errors than can be corrected
+     */
+    static int decode(int[] block, int ecCount) {
+        int n = block.length;
+        int[] syndromes = new int[ecCount];
+        boolean error = false;
+        for (int j = 0; j < ecCount; j++) {
+            // block evaluated at a^j by Horner's rule
+            int value = 0;
+            for (int c : block) {
+                value = multiply(value, EXP[j]) ^ c;
+            }
+            syndromes[j] = value;
+            error |= value != 0;
+        }
+        if (!error) {
+            return 0;
+        }
+
+        // Berlekamp-Massey, error locator lowest coefficient first
+        int[] locator = new int[ecCount + 1];
+        int[] previous = new int[ecCount + 1];
+        locator[0] = 1;
+        previous[0] = 1;
+        int errors = 0;
+        int shift = 1;
+        int previousDiscrepancy = 1;
+        for (int k = 0; k < ecCount; k++) {
+            int discrepancy = syndromes[k];
+            for (int i = 1; i <= errors; i++) {
+                discrepancy ^= multiply(locator[i], syndromes[k - i]);
+            }
+            if (discrepancy == 0) {
+                shift++;
+                continue;
+            }
+            int factor = divide(discrepancy, previousDiscrepancy);
+            if (2 * errors <= k) {
+                int[] saved = locator.clone();
+                subtract(locator, previous, factor, shift);
+                errors = k + 1 - errors;
+                previous = saved;
+                previousDiscrepancy = discrepancy;
+                shift = 1;
+            } else {
+                subtract(locator, previous, factor, shift);
+                shift++;
+            }
+        }
+        if (2 * errors > ecCount) {
+            throw new EpcException("QR code has too many errors");
+        }
+
+        // evaluator = syndromes * locator mod x^ecCount
+        int[] evaluator = new int[ecCount];
+        for (int i = 0; i < ecCount; i++) {
+            for (int j = 0; j <= i && j <= errors; j++) {
+                evaluator[i] ^= multiply(syndromes[i - j], locator[j]);
+            }
+        }
+
+        // Chien search and Forney
+        int found = 0;
+        for (int i = 0; i < n; i++) {
+            int power = n - 1 - i;
+            int inverse = EXP[(255 - power % 255) % 255];
+            if (evaluate(locator, errors, inverse) != 0) {
+                continue;
+            }
+            int derivative = 0;
+            for (int j = 1; j <= errors; j += 2) {
+                derivative ^= multiply(locator[j], power(inverse, j - 1));
+            }
+            if (derivative == 0) {
+                throw new EpcException("QR code has too many errors");
+            }
+            int magnitude = multiply(EXP[power % 255], divide(evaluate(evaluator, ecCount - 1, inverse), derivative));
+            block[i] ^= magnitude;
+            found++;
+        }
+        if (found != errors) {
+            throw new EpcException("QR code has too many errors");
+        }
+        return found;
+    }
+
+    private static void subtract(int[] locator, int[] previous, int factor, int shift) {
+        for (int i = 0; i + shift < locator.length; i++) {
+            locator[i + shift] ^= multiply(previous[i], factor);
+        }
+    }
+
+    private static int evaluate(int[] polynomial, int degree, int x) {
+        int value = 0;
+        for (int i = degree; i >= 0; i--) {
+            value = multiply(value, x) ^ polynomial[i];
+        }
+        return value;
+    }
+
+    private static int power(int x, int exponent) {
+        return exponent == 0 ? 1 : EXP[LOG[x] * exponent % 255];
+    }
+
+    private static int[] generator(int ecCount) {
+        // product of (x - a^i), highest coefficient first
+        int[] product = new int[ecCount + 1];
+        product[0] = 1;
+        for (int i = 0; i < ecCount; i++) {
+            for (int j = i + 1; j >= 1; j--) {
+                product[j] ^= multiply(product[j - 1], EXP[i]);
+            }
+        }
+        int[] generator = new int[ecCount];
+        System.arraycopy(product, 1, generator, 0, ecCount);
+        return generator;
+    }
+}
@@ -0,0 +1,244 @@
+package cc.dames.jepc;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders a {@link QrMatrix} as image, as 1 bit grayscale PNG or as PNG data URI for HTML.
+ * PNG and data URI are streamed: rows are deflated and Base64 encoded as they are produced,
+ * no copy of the whole image is held in memory. A renderer is immutable and thread-safe.
+ */
+public final class QrRenderer {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final String DATA_URI_PREFIX = "data:image/png;base64,";
+
+    private final int scale;
+
+    private final int quietZone;
+
+    private QrRenderer(int scale, int quietZone) {
+        this.scale = scale;
+        this.quietZone = quietZone;
+    }
+
+    /**
+     * @param matrix modules
+     * @return width and height of the image in pixels
+     */
+    public int getImageSize(QrMatrix matrix) {
+        return (matrix.getSize() + 2 * quietZone) * scale;
+    }
+
+    /**
+     * @param matrix modules
+     * @return black and white image
+     */
+    public BufferedImage toImage(QrMatrix matrix) {
+        int size = getImageSize(matrix);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_BINARY);
+        int[] row = new int[size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                row[x] = isDark(matrix, x, y) ? 0xFF000000 : 0xFFFFFFFF;
+            }
+            image.setRGB(0, y, size, 1, row, 0, size);
+        }
+        return image;
+    }
+
+    /**
+     * Writes a 1 bit grayscale PNG
+     * @param matrix modules
+     * @param out stream to write to, not closed
+     * @throws IOException if out fails
+     */
+    public void writePng(QrMatrix matrix, OutputStream out) throws IOException {
+        int size = getImageSize(matrix);
+        out.write(PNG_SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, size);
+        putInt(header, 4, size);
+        header[8] = 1; // bit depth
+        header[9] = 0; // grayscale
+        writeChunk(out, "IHDR", header, header.length);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            byte[] row = new byte[1 + (size + 7) / 8];
+            byte[] chunk = new byte[1 << 13];
+            for (int y = 0; y < size; y++) {
+                // filter type 0, then 8 pixels per byte, 1 is white
+                Arrays.fill(row, (byte) 0);
+                for (int x = 0; x < size; x++) {
+                    if (!isDark(matrix, x, y)) {
+                        row[1 + x / 8] |= (byte) (0x80 >>> (x % 8));
+                    }
+                }
+                deflater.setInput(row);
+                deflate(deflater, chunk, out);
+            }
+            deflater.finish();
+            deflate(deflater, chunk, out);
+        } finally {
+            deflater.end();
+        }
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    /**
+     * Appends the PNG as data:image/png;base64 URI, e.g. to the src attribute of an img element in a template
+     * @param matrix modules
+     * @param out writer or builder to append to
+     * @throws IOException if out fails
+     */
+    public void appendDataUri(QrMatrix matrix, Appendable out) throws IOException {
+        out.append(DATA_URI_PREFIX);
+        AppendableOutputStream chars = new AppendableOutputStream(out);
+        try (OutputStream base64 = Base64.getEncoder().wrap(chars)) {
+            writePng(matrix, base64);
+        }
+    }
+
+    /**
+     * Appends the EPC QR code of the request as data URI
+     * @param request payment request
+     * @param out writer or builder to append to
+     * @throws IOException if out fails
+     * @throws EpcException if the request is invalid
+     */
+    public void appendDataUri(Epc.Builder request, Appendable out) throws IOException {
+        appendDataUri(QrEncoder.encode(request), out);
+    }
+
+    private boolean isDark(QrMatrix matrix, int px, int py) {
+        int x = px / scale - quietZone;
+        int y = py / scale - quietZone;
+        return x >= 0 && y >= 0 && x < matrix.getSize() && y < matrix.getSize() && matrix.get(x, y);
+    }
+
+    private static void deflate(Deflater deflater, byte[] chunk, OutputStream out) throws IOException {
+        while (true) {
+            int length = deflater.deflate(chunk);
+            if (length > 0) {
+                writeChunk(out, "IDAT", chunk, length);
+            }
+            if (deflater.finished() || (length < chunk.length && deflater.needsInput())) {
+                return;
+            }
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        out.write(lengthBytes);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Appends the ASCII bytes of the Base64 encoder as chars
+     */
+    private static final class AppendableOutputStream extends OutputStream {
+
+        private final Appendable out;
+
+        private final char[] buffer = new char[1024];
+
+        private int length;
+
+        private AppendableOutputStream(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == buffer.length) {
+                flushChars();
+            }
+            buffer[length++] = (char) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChars();
+        }
+
+        void flushChars() throws IOException {
+            if (length > 0) {
+                if (out instanceof Writer) {
+                    ((Writer) out).write(buffer, 0, length);
+                } else {
+                    out.append(CharBuffer.wrap(buffer, 0, length));
+                }
+                length = 0;
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private int scale = 4;
+
+        private int quietZone = 4;
+
+        /**
+         * @param value pixels per module, default 4
+         * @return Builder object
+         */
+        public Builder withScale(int value) {
+            if (value < 1) {
+                throw new EpcException("scale must be positive");
+            }
+            this.scale = value;
+            return this;
+        }
+
+        /**
+         * @param value modules of light border, default 4 as required by the QR specification
+         * @return Builder object
+         */
+        public Builder withQuietZone(int value) {
+            if (value < 0) {
+                throw new EpcException("quiet zone can not be negative");
+            }
+            this.quietZone = value;
+            return this;
+        }
+
+        public QrRenderer build() {
+            return new QrRenderer(scale, quietZone);
+        }
+    }
+}
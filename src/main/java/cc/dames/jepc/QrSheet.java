@@ -0,0 +1,336 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Lays out EPC QR codes in a grid on print sheets and writes the sheets as 1 bit raw PBM images (P4),
+ * one image per page concatenated in a single stream, which converts losslessly to PDF or TIFF.
+ * Tiles are encoded and rasterized in parallel, one task per row of tiles, so tasks never share
+ * bytes of a page. Up to one page per worker is rendered while the oldest page is written, so at most
+ * workers + 1 pages are held in memory, pages are written in input order.
+ * <p>
+ * Every page has {@link #getPageBytes()} bytes and only whole pages are written, so when a write fails the
+ * output holds the complete pages before the failed one: its length divided by the page bytes, rounded down.
+ * A sheet is immutable and thread-safe.
+ */
+public final class QrSheet {
+
+    /**
+     * Width of an A4 page at 300 dpi in pixels
+     */
+    public static final int A4_WIDTH = 2480;
+
+    /**
+     * Height of an A4 page at 300 dpi in pixels
+     */
+    public static final int A4_HEIGHT = 3508;
+
+    private final int width;
+
+    private final int height;
+
+    private final int columns;
+
+    private final int rows;
+
+    private final int margin;
+
+    private final int scale;
+
+    private final int quietZone;
+
+    private final int workers;
+
+    private final int stride;
+
+    private final byte[] header;
+
+    private QrSheet(Builder builder) {
+        this.width = builder.width;
+        this.height = builder.height;
+        this.columns = builder.columns;
+        this.rows = builder.rows;
+        this.margin = builder.margin;
+        this.scale = builder.scale;
+        this.quietZone = builder.quietZone;
+        this.workers = builder.workers;
+        this.stride = (width + 7) / 8;
+        this.header = ("P4\n" + width + " " + height + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTilesPerPage() {
+        return columns * rows;
+    }
+
+    /**
+     * @return bytes of one page including the PBM header
+     */
+    public long getPageBytes() {
+        return header.length + (long) stride * height;
+    }
+
+    /**
+     * Writes the pages, the last page may have empty tiles
+     * @param requests payment requests, one QR code each
+     * @param out channel to write to, not closed
+     * @return number of pages written
+     * @throws IOException if out fails
+     * @throws EpcException if a request is invalid or its QR code does not fit a tile
+     */
+    public long write(Iterable<Epc.Builder> requests, WritableByteChannel out) throws IOException {
+        return write(requests.iterator(), out);
+    }
+
+    /**
+     * @param requests payment requests, consumed on the calling thread
+     * @param out channel to write to, not closed
+     * @return number of pages written
+     * @throws IOException if out fails, the message has the number of complete pages written before
+     * @throws EpcException if a request is invalid or its QR code does not fit a tile, the pages before the one
+     * of that request are written and counted in the message
+     */
+    public long write(Iterator<Epc.Builder> requests, WritableByteChannel out) throws IOException {
+        int tiles = getTilesPerPage();
+        // pages in input order, the oldest is written while the others render
+        Deque<Future<byte[]>> rendering = new ArrayDeque<>(workers);
+        Deque<byte[]> free = new ArrayDeque<>(workers + 1);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        long written = 0;
+        try {
+            while (requests.hasNext() || !rendering.isEmpty()) {
+                if (requests.hasNext() && rendering.size() < workers) {
+                    List<Epc.Builder> page = new ArrayList<>(tiles);
+                    while (page.size() < tiles && requests.hasNext()) {
+                        page.add(requests.next());
+                    }
+                    byte[] pixels = free.isEmpty() ? new byte[stride * height] : free.pop();
+                    rendering.add(pool.submit(() -> render(page, pixels)));
+                    continue;
+                }
+                byte[] pixels = next(rendering, written);
+                try {
+                    writeFully(out, ByteBuffer.wrap(header));
+                    writeFully(out, ByteBuffer.wrap(pixels));
+                } catch (IOException e) {
+                    throw new IOException("writing page " + (written + 1) + " failed, "
+                            + written + " complete pages written", e);
+                }
+                written++;
+                Arrays.fill(pixels, (byte) 0);
+                free.push(pixels);
+            }
+            return written;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static byte[] next(Deque<Future<byte[]>> rendering, long written) {
+        try {
+            return rendering.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EpcException("interrupted while rendering, " + written + " complete pages written");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EpcException) {
+                EpcException cause = (EpcException) e.getCause();
+                throw new EpcException("page " + (written + 1) + ": " + cause.getMessage() + ", "
+                        + written + " complete pages written", cause.getField());
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return pixels with the tiles of the page drawn, rows of tiles in parallel in the pool of the calling task
+     */
+    private byte[] render(List<Epc.Builder> page, byte[] pixels) {
+        IntStream.range(0, rows).parallel().forEach(row -> {
+            for (int column = 0; column < columns; column++) {
+                int index = row * columns + column;
+                if (index < page.size()) {
+                    drawTile(pixels, QrEncoder.encode(page.get(index)), column, row);
+                }
+            }
+        });
+        return pixels;
+    }
+
+    private void drawTile(byte[] page, QrMatrix matrix, int column, int row) {
+        int cellWidth = (width - 2 * margin) / columns;
+        int cellHeight = (height - 2 * margin) / rows;
+        int size = matrix.getSize();
+        int s = scale > 0 ? scale : Math.min(cellWidth, cellHeight) / (size + 2 * quietZone);
+        if (s < 1 || (size + 2 * quietZone) * s > Math.min(cellWidth, cellHeight)) {
+            throw new EpcException("QR code with " + size + " modules does not fit a tile of "
+                    + cellWidth + "x" + cellHeight + " pixels");
+        }
+        int left = margin + column * cellWidth + (cellWidth - size * s) / 2;
+        int top = margin + row * cellHeight + (cellHeight - size * s) / 2;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; ) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int end = x + 1;
+                while (end < size && matrix.get(end, y)) {
+                    end++;
+                }
+                for (int py = top + y * s; py < top + (y + 1) * s; py++) {
+                    fillRun(page, py * stride, left + x * s, left + end * s);
+                }
+                x = end;
+            }
+        }
+    }
+
+    /**
+     * Sets pixels from to to (exclusive) of a row, 1 is black, most significant bit first
+     */
+    static void fillRun(byte[] page, int offset, int from, int to) {
+        int first = from >>> 3;
+        int last = (to - 1) >>> 3;
+        int head = 0xFF >>> (from & 7);
+        int tail = 0xFF << (7 - ((to - 1) & 7));
+        if (first == last) {
+            page[offset + first] |= (byte) (head & tail);
+            return;
+        }
+        page[offset + first] |= (byte) head;
+        Arrays.fill(page, offset + first + 1, offset + last, (byte) 0xFF);
+        page[offset + last] |= (byte) tail;
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    public static class Builder {
+
+        private int width = A4_WIDTH;
+
+        private int height = A4_HEIGHT;
+
+        private int columns = 3;
+
+        private int rows = 4;
+
+        private int margin = 118;
+
+        private int scale;
+
+        private int quietZone = 4;
+
+        private int workers = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * @param width pixels, default A4 at 300 dpi
+         * @param height pixels, default A4 at 300 dpi
+         * @return Builder object
+         */
+        public Builder withPageSize(int width, int height) {
+            if (width < 1 || height < 1) {
+                throw new EpcException("page size must be positive");
+            }
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        /**
+         * @param columns tiles per row, default 3
+         * @param rows tiles per column, default 4
+         * @return Builder object
+         */
+        public Builder withGrid(int columns, int rows) {
+            if (columns < 1 || rows < 1) {
+                throw new EpcException("grid must have at least one tile");
+            }
+            this.columns = columns;
+            this.rows = rows;
+            return this;
+        }
+
+        /**
+         * @param value pixels of blank border around the grid, default 118 (1 cm at 300 dpi)
+         * @return Builder object
+         */
+        public Builder withMargin(int value) {
+            if (value < 0) {
+                throw new EpcException("margin can not be negative");
+            }
+            this.margin = value;
+            return this;
+        }
+
+        /**
+         * @param value pixels per module, default 0 scales each QR code to fill its tile
+         * @return Builder object
+         */
+        public Builder withScale(int value) {
+            if (value < 0) {
+                throw new EpcException("scale can not be negative");
+            }
+            this.scale = value;
+            return this;
+        }
+
+        /**
+         * @param value modules of light border kept free within a tile, default 4
+         * @return Builder object
+         */
+        public Builder withQuietZone(int value) {
+            if (value < 0) {
+                throw new EpcException("quiet zone can not be negative");
+            }
+            this.quietZone = value;
+            return this;
+        }
+
+        /**
+         * @param value threads rendering pages, also the number of pages rendered ahead of writing, default the number of processors
+         * @return Builder object
+         */
+        public Builder withWorkers(int value) {
+            if (value < 1) {
+                throw new EpcException("workers must be positive");
+            }
+            this.workers = value;
+            return this;
+        }
+
+        public QrSheet build() {
+            if (2 * margin >= width || 2 * margin >= height) {
+                throw new EpcException("margin leaves no space for tiles");
+            }
+            return new QrSheet(this);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package cc.dames.jepc;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Structure of the QR code versions 1 to 40: function patterns, block layout and the order of the data modules,
+ * as specified in ISO/IEC 18004. Shared by {@link QrEncoder} and {@link QrDecoder}.
+ */
+final class QrVersion {
+
+    static final int MIN_VERSION = 1;
+
+    static final int MAX_VERSION = 40;
+
+    // error correction codewords per block by level (L, M, Q, H) and version
+    private static final byte[][] EC_CODEWORDS_PER_BLOCK = {
+            {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+            {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30}
+    };
+
+    // error correction blocks by level (L, M, Q, H) and version
+    private static final byte[][] EC_BLOCKS = {
+            {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8, 8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25},
+            {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+            {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+            {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81}
+    };
+
+    private static final AtomicReferenceArray<QrVersion> VERSIONS = new AtomicReferenceArray<>(MAX_VERSION + 1);
+
+    private final int version;
+
+    private final int size;
+
+    private final boolean[] function;
+
+    // module indexes y * size + x of the data bits in placement order
+    private final int[] dataModules;
+
+    private QrVersion(int version) {
+        this.version = version;
+        this.size = 17 + 4 * version;
+        this.function = new boolean[size * size];
+        markFunctionModules();
+        this.dataModules = new int[totalCodewords() * 8];
+        placeDataModules();
+    }
+
+    static QrVersion of(int version) {
+        if (version < MIN_VERSION || version > MAX_VERSION) {
+            throw new EpcException("QR version must be between 1 and 40");
+        }
+        QrVersion qrVersion = VERSIONS.get(version);
+        if (qrVersion == null) {
+            qrVersion = new QrVersion(version);
+            if (!VERSIONS.compareAndSet(version, null, qrVersion)) {
+                qrVersion = VERSIONS.get(version);
+            }
+        }
+        return qrVersion;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    boolean isFunction(int x, int y) {
+        return function[y * size + x];
+    }
+
+    int[] getDataModules() {
+        return dataModules;
+    }
+
+    /**
+     * @return number of codewords, data and error correction, of all blocks
+     */
+    int totalCodewords() {
+        int modules = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignments = version / 7 + 2;
+            modules -= (25 * alignments - 10) * alignments - 55;
+            if (version >= 7) {
+                modules -= 36;
+            }
+        }
+        return modules / 8;
+    }
+
+    int blocks(QrLevel level) {
+        return EC_BLOCKS[level.ordinal()][version];
+    }
+
+    int ecCodewordsPerBlock(QrLevel level) {
+        return EC_CODEWORDS_PER_BLOCK[level.ordinal()][version];
+    }
+
+    int dataCodewords(QrLevel level) {
+        return totalCodewords() - blocks(level) * ecCodewordsPerBlock(level);
+    }
+
+    /**
+     * @return bits of the character count of byte mode
+     */
+    int byteCountBits() {
+        return version <= 9 ? 8 : 16;
+    }
+
+    /**
+     * @return 15 bits of format information with BCH code and mask
+     */
+    static int formatBits(QrLevel level, int mask) {
+        int data = level.getFormatBits() << 3 | mask;
+        int remainder = data;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        return (data << 10 | remainder) ^ 0x5412;
+    }
+
+    /**
+     * @return 18 bits of version information with BCH code, versions 7 and up
+     */
+    static int versionBits(int version) {
+        int remainder = version;
+        for (int i = 0; i < 12; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+        }
+        return version << 12 | remainder;
+    }
+
+    /**
+     * @return true if the mask pattern inverts the module
+     */
+    static boolean mask(int mask, int x, int y) {
+        switch (mask) {
+            case 0:
+                return (x + y) % 2 == 0;
+            case 1:
+                return y % 2 == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (x + y) % 3 == 0;
+            case 4:
+                return (x / 3 + y / 2) % 2 == 0;
+            case 5:
+                return x * y % 2 + x * y % 3 == 0;
+            case 6:
+                return (x * y % 2 + x * y % 3) % 2 == 0;
+            default:
+                return ((x + y) % 2 + x * y % 3) % 2 == 0;
+        }
+    }
+
+    /**
+     * @return centers of the alignment patterns on either axis
+     */
+    int[] alignmentPositions() {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] positions = new int[count];
+        positions[0] = 6;
+        for (int i = count - 1, position = size - 7; i >= 1; i--, position -= step) {
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * @return coordinates x, y of the 15 format bits, least significant first, the first copy then the second
+     */
+    int[][] formatModules() {
+        int[][] modules = new int[30][];
+        for (int i = 0; i < 15; i++) {
+            // first copy around the top left finder
+            modules[i] = i < 6 ? new int[]{8, i} : i < 9 ? new int[]{i == 8 ? 7 : 8, i == 6 ? 7 : 8} : new int[]{14 - i, 8};
+            // second copy below the top right and right of the bottom left finder
+            modules[15 + i] = i < 8 ? new int[]{size - 1 - i, 8} : new int[]{8, size - 15 + i};
+        }
+        return modules;
+    }
+
+    private void markFunctionModules() {
+        for (int i = 0; i < size; i++) {
+            mark(6, i);
+            mark(i, 6);
+        }
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 9; x++) {
+                mark(x, y);
+                if (x < 8) {
+                    mark(size - 1 - x, y);
+                }
+                if (y < 8) {
+                    mark(x, size - 1 - y);
+                }
+            }
+        }
+        int[] positions = alignmentPositions();
+        for (int i = 0; i < positions.length; i++) {
+            for (int j = 0; j < positions.length; j++) {
+                if ((i == 0 && j == 0) || (i == 0 && j == positions.length - 1) || (i == positions.length - 1 && j == 0)) {
+                    continue;
+                }
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        mark(positions[i] + dx, positions[j] + dy);
+                    }
+                }
+            }
+        }
+        if (version >= 7) {
+            for (int i = 0; i < 18; i++) {
+                mark(size - 11 + i % 3, i / 3);
+                mark(i / 3, size - 11 + i % 3);
+            }
+        }
+    }
+
+    private void mark(int x, int y) {
+        function[y * size + x] = true;
+    }
+
+    private void placeDataModules() {
+        int i = 0;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5;
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vertical = 0; vertical < size; vertical++) {
+                int y = upward ? size - 1 - vertical : vertical;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    if (!function[y * size + x] && i < dataModules.length) {
+                        dataModules[i++] = y * size + x;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique creditor references on several nodes at the same time.
+ * Sequence numbers are leased in blocks from a shared {@link SequenceStore}, within a block they are
+ * handed out lock-free. Numbers of a block not used before shutdown are skipped, never reused.
+ */
+public final class ScorAllocator {
+
+    private static final int MAX_REFERENCE_LENGTH = 21;
+
+    private final SequenceStore store;
+
+    private final int blockSize;
+
+    private final String prefix;
+
+    private final int width;
+
+    private volatile Block block = new Block(0, 0);
+
+    private ScorAllocator(Builder builder) {
+        this.store = builder.store;
+        this.blockSize = builder.blockSize;
+        this.prefix = builder.prefix;
+        this.width = builder.width;
+    }
+
+    /**
+     * @return next unique sequence number
+     * @throws UncheckedIOException if a new block can not be leased
+     */
+    public long nextNumber() {
+        while (true) {
+            Block current = block;
+            long number = current.next.getAndIncrement();
+            if (number < current.end) {
+                return number;
+            }
+            lease(current);
+        }
+    }
+
+    /**
+     * @return next unique creditor reference, prefix and zero-padded sequence number with check digits
+     * @throws UncheckedIOException if a new block can not be leased
+     */
+    public String next() {
+        String number = Long.toString(nextNumber());
+        StringBuilder reference = new StringBuilder(MAX_REFERENCE_LENGTH).append(prefix);
+        for (int i = number.length(); i < width; i++) {
+            reference.append('0');
+        }
+        reference.append(number);
+        if (reference.length() > MAX_REFERENCE_LENGTH) {
+            throw new EpcException("reference exceeds allowed length, max. " + MAX_REFERENCE_LENGTH, "scor");
+        }
+        return SepaUtils.createSCOR(reference.toString());
+    }
+
+    private synchronized void lease(Block exhausted) {
+        if (block != exhausted) {
+            return;
+        }
+        try {
+            long start = store.lease(blockSize);
+            block = new Block(start, start + blockSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("leasing a block of sequence numbers failed", e);
+        }
+    }
+
+    private static final class Block {
+
+        private final AtomicLong next;
+
+        private final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    public static class Builder {
+
+        private SequenceStore store;
+
+        private int blockSize = 1000;
+
+        private String prefix = "";
+
+        private int width;
+
+        /**
+         * @param value store to lease blocks from, mandatory
+         * @return Builder object
+         */
+        public Builder withStore(SequenceStore value) {
+            this.store = value;
+            return this;
+        }
+
+        /**
+         * @param value sequence numbers per lease, 1000 default
+         * @return Builder object
+         */
+        public Builder withBlockSize(int value) {
+            this.blockSize = value;
+            return this;
+        }
+
+        /**
+         * @param value letters and digits in front of the sequence number, e.g. a node or year
+         * @return Builder object
+         */
+        public Builder withPrefix(String value) {
+            this.prefix = value == null ? "" : value.trim();
+            return this;
+        }
+
+        /**
+         * @param value minimum number of digits, the sequence number is padded with leading zeros
+         * @return Builder object
+         */
+        public Builder withWidth(int value) {
+            this.width = value;
+            return this;
+        }
+
+        public ScorAllocator build() {
+            if (store == null) {
+                throw new EpcException("sequence store can not be empty");
+            }
+            if (blockSize < 1) {
+                throw new EpcException("block size must be positive");
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                char c = prefix.charAt(i);
+                if ((c < '0' || c > '9') && (c < 'A' || c > 'Z')) {
+                    throw new EpcException("prefix contains invalid character(s), allowed are A-Z and 0-9");
+                }
+            }
+            if (prefix.length() + Math.max(width, 1) > MAX_REFERENCE_LENGTH) {
+                throw new EpcException("prefix and width exceed allowed length, max. " + MAX_REFERENCE_LENGTH);
+            }
+            return new ScorAllocator(this);
+        }
+    }
+}
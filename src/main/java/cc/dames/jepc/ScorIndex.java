@@ -0,0 +1,229 @@
+package cc.dames.jepc;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Index from issued creditor references (ISO 11649) to invoice ids, to match incoming payments.
+ * The reference characters are packed into two longs and stored by open addressing, no objects per entry.
+ * The index is built once by the {@link Builder}, lookups and removals are thread-safe and lock-free.
+ * Incoming references are checked like {@link SepaUtils#validateSCOR(String)}.
+ */
+public final class ScorIndex {
+
+    /**
+     * returned if a reference is invalid, unknown or already removed
+     */
+    public static final long NOT_FOUND = -1L;
+
+    private static final int MAX_REFERENCE_LENGTH = 21;
+
+    // two longs per slot, an empty slot is 0, 0
+    private final long[] keys;
+
+    private final AtomicLongArray invoiceIds;
+
+    private final int mask;
+
+    private final AtomicInteger size;
+
+    private ScorIndex(long[] keys, AtomicLongArray invoiceIds, int size) {
+        this.keys = keys;
+        this.invoiceIds = invoiceIds;
+        this.mask = invoiceIds.length() - 1;
+        this.size = new AtomicInteger(size);
+    }
+
+    /**
+     * @param scor incoming creditor reference, spaces are ignored
+     * @return invoice id, {@link #NOT_FOUND} if invalid, unknown or removed
+     */
+    public long lookup(CharSequence scor) {
+        int slot = slot(scor);
+        return slot < 0 ? NOT_FOUND : invoiceIds.get(slot);
+    }
+
+    /**
+     * Removes a settled invoice, each reference is returned only once even if removed concurrently
+     * @param scor incoming creditor reference, spaces are ignored
+     * @return invoice id, {@link #NOT_FOUND} if invalid, unknown or already removed
+     */
+    public long remove(CharSequence scor) {
+        int slot = slot(scor);
+        if (slot < 0) {
+            return NOT_FOUND;
+        }
+        long invoiceId = invoiceIds.getAndSet(slot, NOT_FOUND);
+        if (invoiceId != NOT_FOUND) {
+            size.decrementAndGet();
+        }
+        return invoiceId;
+    }
+
+    /**
+     * @return number of references not yet removed
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private int slot(CharSequence scor) {
+        if (!isValid(scor)) {
+            return -1;
+        }
+        long lo = pack(scor, 0, 11);
+        long hi = pack(scor, 11, MAX_REFERENCE_LENGTH);
+        for (int slot = hash(lo, hi) & mask; ; slot = (slot + 1) & mask) {
+            long key = keys[2 * slot];
+            if (key == 0L) {
+                return -1;
+            }
+            if (key == lo && keys[2 * slot + 1] == hi) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Checks format and checksum like {@link SepaUtils#validateSCOR(String)}, spaces are ignored
+     */
+    private static boolean isValid(CharSequence scor) {
+        if (scor == null) {
+            return false;
+        }
+        int remainder = 0;
+        int position = 0;
+        int checkDigits = 0;
+        for (int i = 0; i < scor.length(); i++) {
+            char c = scor.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (position < 4) {
+                if (position == 0 ? c != 'R' : position == 1 ? c != 'F' : !isDigit(c)) {
+                    return false;
+                }
+                if (position >= 2) {
+                    checkDigits = checkDigits * 10 + c - '0';
+                }
+                position++;
+                continue;
+            }
+            if (!isDigit(c) && (c < 'A' || c > 'Z') || position - 4 == MAX_REFERENCE_LENGTH) {
+                return false;
+            }
+            remainder = SepaUtils.mod97(remainder, c);
+            position++;
+        }
+        if (position < 5) {
+            return false;
+        }
+        // "RF" and the check digits are moved to the end
+        remainder = SepaUtils.mod97(remainder, 'R');
+        remainder = SepaUtils.mod97(remainder, 'F');
+        remainder = SepaUtils.mod97(remainder, (char) ('0' + checkDigits / 10));
+        remainder = SepaUtils.mod97(remainder, (char) ('0' + checkDigits % 10));
+        return remainder == 1;
+    }
+
+    /**
+     * Packs the reference characters from to to (exclusive) after "RF" and check digits of a valid reference,
+     * base 37, one digit per character, 0 is not used. Characters 1 to 11 and 12 to 21 fit a long each.
+     */
+    private static long pack(CharSequence scor, int from, int to) {
+        long packed = 0L;
+        int position = -4;
+        for (int i = 0; i < scor.length() && position < to; i++) {
+            char c = scor.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (position >= from) {
+                packed = packed * 37 + (isDigit(c) ? c - '0' + 1 : c - 'A' + 11);
+            }
+            position++;
+        }
+        return packed;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int hash(long lo, long hi) {
+        long h = lo * 0x9E3779B97F4A7C15L + hi;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    public static class Builder {
+
+        private long[] keys = new long[64];
+
+        private long[] invoiceIds = new long[32];
+
+        private int size;
+
+        /**
+         * @param value expected number of references, avoids resizing
+         * @return Builder object
+         */
+        public Builder withExpectedSize(int value) {
+            if (value > invoiceIds.length) {
+                keys = Arrays.copyOf(keys, 2 * value);
+                invoiceIds = Arrays.copyOf(invoiceIds, value);
+            }
+            return this;
+        }
+
+        /**
+         * @param scor issued creditor reference, e.g. of {@link SepaUtils#createSCOR(String)}
+         * @param invoiceId id of the invoice, not negative
+         * @return Builder object
+         */
+        public Builder add(String scor, long invoiceId) {
+            if (invoiceId < 0) {
+                throw new EpcException("invoice id can not be negative");
+            }
+            if (!isValid(scor)) {
+                throw new EpcException("SCOR has invalid format or checksum");
+            }
+            if (size == invoiceIds.length) {
+                keys = Arrays.copyOf(keys, 4 * size);
+                invoiceIds = Arrays.copyOf(invoiceIds, 2 * size);
+            }
+            keys[2 * size] = pack(scor, 0, 11);
+            keys[2 * size + 1] = pack(scor, 11, MAX_REFERENCE_LENGTH);
+            invoiceIds[size++] = invoiceId;
+            return this;
+        }
+
+        public ScorIndex build() {
+            // load factor of at most 0.5
+            int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+            long[] table = new long[2 * capacity];
+            AtomicLongArray ids = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                ids.set(i, NOT_FOUND);
+            }
+            for (int i = 0; i < size; i++) {
+                long lo = keys[2 * i];
+                long hi = keys[2 * i + 1];
+                int slot = hash(lo, hi) & (capacity - 1);
+                while (table[2 * slot] != 0L) {
+                    if (table[2 * slot] == lo && table[2 * slot + 1] == hi) {
+                        throw new EpcException("SCOR is added twice");
+                    }
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                table[2 * slot] = lo;
+                table[2 * slot + 1] = hi;
+                ids.set(slot, invoiceIds[i]);
+            }
+            return new ScorIndex(table, ids, size);
+        }
+    }
+}
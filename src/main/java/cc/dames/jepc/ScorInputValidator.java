@@ -0,0 +1,47 @@
+package cc.dames.jepc;
+
+/**
+ * Validates a Structured Creditor Reference while it is typed, same rules as {@link SepaUtils#validateSCOR(String)}.
+ * A reference with valid checksum is {@link InputState#VALID} even if more characters may follow.
+ */
+public final class ScorInputValidator extends ChecksumInputValidator {
+
+    private static final int MAX_LENGTH = 25;
+
+    @Override
+    char normalize(char c) {
+        // unlike IBANs references are upper case only
+        return c;
+    }
+
+    @Override
+    boolean acceptsBlank(int position) {
+        // validateSCOR requires the reference to start with "RF"
+        return position >= 2;
+    }
+
+    @Override
+    boolean accepts(int position, char c) {
+        if (position == 0) {
+            return c == 'R';
+        }
+        if (position == 1) {
+            return c == 'F';
+        }
+        if (position < 4) {
+            return isDigit(c);
+        }
+        return position < MAX_LENGTH && (isDigit(c) || isLetter(c));
+    }
+
+    @Override
+    InputState state(int length, int remainder) {
+        if (length < 5) {
+            return InputState.INCOMPLETE;
+        }
+        if (checksum(remainder) == 1) {
+            return InputState.VALID;
+        }
+        return length < MAX_LENGTH ? InputState.INCOMPLETE : InputState.INVALID;
+    }
+}
@@ -0,0 +1,23 @@
+package cc.dames.jepc;
+
+import java.util.regex.Pattern;
+
+/**
+ * Regular expressions of the SEPA formats.
+ * The validators of {@link SepaUtils} and {@link Epc.Builder} do not use them,
+ * the patterns are compiled on first access of one of these constants.
+ */
+public final class SepaPatterns {
+
+    private SepaPatterns() {
+    }
+
+    public static final Pattern IBAN_PATTERN = Pattern.compile("^(?:((?:IT|SM)\\d{2}[A-Z]\\d{22})|(NL\\d{2}[A-Z]{4}\\d{10})|(LV\\d{2}[A-Z]{4}\\d{13})|((?:BG|GB|IE)\\d{2}[A-Z]{4}\\d{14})|(GI\\d{2}[A-Z]{4}\\d{15})|(RO\\d{2}[A-Z]{4}\\d{16})|(MT\\d{2}[A-Z]{4}\\d{23})|(NO\\d{13})|((?:DK|FI|FO)\\d{16})|((?:SI)\\d{17})|((?:AT|EE|LU|LT)\\d{18})|((?:HR|LI|CH)\\d{19})|((?:DE)\\d{20})|((?:CZ|ES|SK|SE)\\d{22})|(PT\\d{23})|((?:IS)\\d{24})|((?:BE)\\d{14})|((?:FR|MC|GR)\\d{25})|((?:PL|HU|CY)\\d{26}))$", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+
+    public static final Pattern SEPA_TEXT_PATTERN = Pattern.compile("[a-zA-Z0-9/\\-?:().,+'& ]+");
+
+    public static final Pattern SEPA_TEXT_UMLAUTS_PATTERN = Pattern.compile("[a-zA-Z0-9/\\-?:().,+&' öäüÄÖÜß]+", Pattern.UNICODE_CASE | Pattern.MULTILINE);
+
+    public static final Pattern BIC_REGEX_PATTERN = Pattern.compile("([a-zA-Z]{4})([a-zA-Z]{2})(([2-9a-zA-Z])([0-9a-np-zA-NP-Z]))((([0-9a-wy-zA-WY-Z])([0-9a-zA-Z]{2}))|([xX]{3})|)", Pattern.UNICODE_CASE | Pattern.MULTILINE);
+
+}
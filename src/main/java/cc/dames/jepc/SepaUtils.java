@@ -1,37 +1,32 @@
 package cc.dames.jepc;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.math.RoundingMode;
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.BitSet;
+import java.util.List;
 
-public final class SepaUtils {
+/**
+ * Validation and checksum helpers for SEPA fields.
+ * The validators do not use the regular expressions of {@link SepaPatterns},
+ * they are not compiled unless accessed. They are still inherited as {@code SepaUtils.IBAN_PATTERN} etc.
+ * for compatibility.
+ */
+@SuppressWarnings("deprecation")
+public final class SepaUtils implements LegacySepaPatterns {
 
     private SepaUtils() {
     }
 
     private static final BigDecimal MAX_AMOUNT = new BigDecimal("999999999.99");
 
-    private static final String IBAN_REGEX = "^(?:((?:IT|SM)\\d{2}[A-Z]\\d{22})|(NL\\d{2}[A-Z]{4}\\d{10})|(LV\\d{2}[A-Z]{4}\\d{13})|((?:BG|GB|IE)\\d{2}[A-Z]{4}\\d{14})|(GI\\d{2}[A-Z]{4}\\d{15})|(RO\\d{2}[A-Z]{4}\\d{16})|(MT\\d{2}[A-Z]{4}\\d{23})|(NO\\d{13})|((?:DK|FI|FO)\\d{16})|((?:SI)\\d{17})|((?:AT|EE|LU|LT)\\d{18})|((?:HR|LI|CH)\\d{19})|((?:DE)\\d{20})|((?:CZ|ES|SK|SE)\\d{22})|(PT\\d{23})|((?:IS)\\d{24})|((?:BE)\\d{14})|((?:FR|MC|GR)\\d{25})|((?:PL|HU|CY)\\d{26}))$";
-
-    public static final Pattern IBAN_PATTERN = Pattern.compile(IBAN_REGEX, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-
-    private static final String SEPA_TEXT = "[a-zA-Z0-9/\\-?:().,+'& ]+";
-
-    public static final Pattern SEPA_TEXT_PATTERN = Pattern.compile(SEPA_TEXT);
-
-    private static final String SEPA_TEXT_UMLAUTS = "[a-zA-Z0-9/\\-?:().,+&' öäüÄÖÜß]+";
+    private static final String SCOR_PREFIX = "RF";
 
-    public static final Pattern SEPA_TEXT_UMLAUTS_PATTERN = Pattern.compile(SEPA_TEXT_UMLAUTS, Pattern.UNICODE_CASE | Pattern.MULTILINE);
+    private static final String SEPA_TEXT_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789/-?:().,+'& ";
 
-    private static final String BIC_REGEX = "([a-zA-Z]{4})([a-zA-Z]{2})(([2-9a-zA-Z])([0-9a-np-zA-NP-Z]))((([0-9a-wy-zA-WY-Z])([0-9a-zA-Z]{2}))|([xX]{3})|)";
+    // SEPA_TEXT as bit masks, one bit per ASCII char, 0-63 and 64-127
+    private static final long SEPA_TEXT_MASK_LOW = sepaTextMask(0);
 
-    public static final Pattern BIC_REGEX_PATTERN = Pattern.compile(BIC_REGEX, Pattern.UNICODE_CASE | Pattern.MULTILINE);
-
-    private static final String SCOR_PREFIX = "RF";
+    private static final long SEPA_TEXT_MASK_HIGH = sepaTextMask(64);
 
     public static boolean strNotEmpty(final String str) {
         return str != null && !str.isEmpty();
@@ -53,11 +48,53 @@ public final class SepaUtils {
         return value.setScale(2, RoundingMode.HALF_EVEN);
     }
 
+    /**
+     * Checks the value against the SEPA character set,
+     * same result as {@link SepaPatterns#SEPA_TEXT_PATTERN} or {@link SepaPatterns#SEPA_TEXT_UMLAUTS_PATTERN}
+     * @param value text to validate
+     * @param umlauts true if german umlauts are allowed
+     * @return true if value is not empty and contains SEPA characters only
+     */
+    public static boolean validateSepaText(CharSequence value, boolean umlauts) {
+        SepaValidationEvent event = new SepaValidationEvent();
+        event.begin();
+        return event.finish("SepaText", value, isSepaText(value, umlauts));
+    }
+
+    private static boolean isSepaText(CharSequence value, boolean umlauts) {
+        if (value == null || value.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!isSepaChar(value.charAt(i), umlauts)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bulk variant of {@link #validateSepaText(CharSequence, boolean)}
+     * @param values texts to validate
+     * @param umlauts true if german umlauts are allowed
+     * @return bit set, bit i is set if value i is valid
+     */
+    public static BitSet validateSepaTexts(List<? extends CharSequence> values, boolean umlauts) {
+        BitSet valid = new BitSet(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            if (validateSepaText(values.get(i), umlauts)) {
+                valid.set(i);
+            }
+        }
+        return valid;
+    }
+
     public static String createSCOR(String reference) {
         if (strEmpty(reference)) {
             return "";
         }
-        return SCOR_PREFIX + calculateCheckSum(reference) + reference;
+        int checkSum = calculateCheckSum(reference);
+        return SCOR_PREFIX + (checkSum < 10 ? "0" : "") + checkSum + reference;
     }
 
     /**
@@ -66,6 +103,12 @@ public final class SepaUtils {
      * @return true if scor is valid creditor reference
      */
     public static boolean validateSCOR(String scor) {
+        SepaValidationEvent event = new SepaValidationEvent();
+        event.begin();
+        return event.finish("SCOR", scor, isSCOR(scor));
+    }
+
+    private static boolean isSCOR(String scor) {
         if (strEmpty(scor)) {
             return false;
         }
@@ -74,65 +117,193 @@ public final class SepaUtils {
         }
 
         scor = scor.replace(" ", "");
-        if (scor.length() > 25) {
+        if (scor.length() > 25 || scor.length() < 5) {
             return false;
         }
-        if (!scor.matches("RF\\d{2}[0-9A-Z]+")) {
+        if (!isDigit(scor.charAt(2)) || !isDigit(scor.charAt(3))) {
             return false;
         }
-
-        String prefix = scor.substring(0, 4);
-        String reference = scor.replace(prefix, "");
-
-        BigInteger bi = new BigInteger(substituteCharWithNumber(reference + prefix));
-        return bi.mod(BigInteger.valueOf(97L)).equals(BigInteger.ONE);
+        for (int i = 4; i < scor.length(); i++) {
+            char c = scor.charAt(i);
+            if (!isDigit(c) && (c < 'A' || c > 'Z')) {
+                return false;
+            }
+        }
+        return mod97(scor) == 1;
     }
 
     public static boolean validateIBAN(String iban) {
+        SepaValidationEvent event = new SepaValidationEvent();
+        event.begin();
+        return event.finish("IBAN", iban, isIBAN(iban));
+    }
+
+    private static boolean isIBAN(String iban) {
         if (strEmpty(iban)) {
             return false;
         }
         iban = iban.replace(" ", "");
-        Matcher matcher = IBAN_PATTERN.matcher(iban);
-        if (!matcher.matches()) {
+        if (!validateIBANFormat(iban)) {
             return false;
         }
-        String prefix = iban.substring(0, 4);
-        String reference = iban.replace(prefix, "");
-        BigInteger bi = new BigInteger(substituteCharWithNumber(reference + prefix));
-        return bi.mod(BigInteger.valueOf(97L)).equals(BigInteger.ONE);
+        return mod97(iban) == 1;
+    }
+
+    /**
+     * @param country IBAN country
+     * @param bban national account number in the format of the country
+     * @return IBAN with check digits
+     */
+    public static String createIBAN(IbanCountry country, String bban) {
+        int remainder = 0;
+        for (int i = 0; bban != null && i < bban.length() && remainder >= 0; i++) {
+            remainder = mod97(remainder, bban.charAt(i));
+        }
+        if (remainder < 0) {
+            throw new EpcException("BBAN contains invalid character(s)", "iban");
+        }
+        remainder = mod97(mod97(mod97(mod97(remainder, country.name().charAt(0)), country.name().charAt(1)), '0'), '0');
+        int checkSum = 98 - remainder;
+        String iban = country.name() + (checkSum < 10 ? "0" : "") + checkSum + bban;
+        if (!country.matches(iban)) {
+            throw new EpcException("BBAN does not match the format of " + country.name(), "iban");
+        }
+        return iban;
+    }
+
+    /**
+     * Checks the structure of the IBAN, not the checksum, same as {@link SepaPatterns#IBAN_PATTERN}
+     * @param iban IBAN without spaces
+     * @return true if iban has the format of a known SEPA country
+     */
+    public static boolean validateIBANFormat(String iban) {
+        IbanCountry country = IbanCountry.of(iban);
+        return country != null && country.matches(iban);
+    }
+
+    /**
+     * Checks the BIC without the regex engine, same as {@link SepaPatterns#BIC_REGEX_PATTERN}
+     * @param bic BIC with 8 or 11 characters
+     * @return true if bic is a valid BIC
+     */
+    public static boolean validateBIC(String bic) {
+        SepaValidationEvent event = new SepaValidationEvent();
+        event.begin();
+        return event.finish("BIC", bic, isBIC(bic));
+    }
+
+    private static boolean isBIC(String bic) {
+        if (strEmpty(bic) || (bic.length() != 8 && bic.length() != 11)) {
+            return false;
+        }
+        for (int i = 0; i < 6; i++) {
+            if (!isLetter(bic.charAt(i))) {
+                return false;
+            }
+        }
+        char location = bic.charAt(6);
+        if (!isLetter(location) && (location < '2' || location > '9')) {
+            return false;
+        }
+        char status = bic.charAt(7);
+        if (!isAlphanumeric(status) || status == 'o' || status == 'O') {
+            return false;
+        }
+        if (bic.length() == 8) {
+            return true;
+        }
+        if (isX(bic.charAt(8))) {
+            return isX(bic.charAt(9)) && isX(bic.charAt(10));
+        }
+        return isAlphanumeric(bic.charAt(8)) && isAlphanumeric(bic.charAt(9)) && isAlphanumeric(bic.charAt(10));
     }
 
     private static int calculateCheckSum(String reference) {
         if (strEmpty(reference)) {
             return 0;
         }
-        return
-                BigInteger.valueOf(98L)
-                .subtract(new BigInteger(substituteCharWithNumber(reference + SCOR_PREFIX + "00"))
-                .mod(BigInteger.valueOf(97L)))
-                .intValue();
+        int remainder = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            remainder = mod97(remainder, reference.charAt(i));
+            if (remainder < 0) {
+                throw new EpcException("reference contains invalid character(s)");
+            }
+        }
+        remainder = mod97(mod97(mod97(mod97(remainder, 'R'), 'F'), '0'), '0');
+        return 98 - remainder;
     }
 
-    private static String substituteCharWithNumber(String value) {
-        if (strEmpty(value)) {
-            return "";
+    /**
+     * ISO 7064 mod 97-10 of IBAN or SCOR, the first four characters are moved to the end
+     * @param value IBAN or SCOR without spaces, at least four characters
+     * @return remainder, 1 if valid, -1 if value contains other than letters and digits
+     */
+    static int mod97(CharSequence value) {
+        int remainder = 0;
+        for (int i = 4; i < value.length() && remainder >= 0; i++) {
+            remainder = mod97(remainder, value.charAt(i));
         }
-        CharacterIterator it = new StringCharacterIterator(value);
-        StringBuilder decoded = new StringBuilder();
-        while (it.current() != CharacterIterator.DONE) {
-            if (isLetter(it.current())) {
-                decoded.append(CharDigitTranslation.valueOf(String.valueOf(it.current()).toUpperCase()).getDigit());
-            } else {
-                decoded.append(it.current());
+        for (int i = 0; i < 4 && remainder >= 0; i++) {
+            remainder = mod97(remainder, value.charAt(i));
+        }
+        return remainder;
+    }
+
+    /**
+     * Appends a character to a running mod 97 remainder, letters count as two digits, A = 10 ... Z = 35
+     * @param remainder remainder of the preceding characters, 0 to 96
+     * @param c digit or letter
+     * @return new remainder, -1 if c is neither digit nor letter
+     */
+    static int mod97(int remainder, char c) {
+        if (isDigit(c)) {
+            return (remainder * 10 + c - '0') % 97;
+        }
+        if (isLetter(c)) {
+            return (remainder * 100 + Character.toUpperCase(c) - 'A' + 10) % 97;
+        }
+        return -1;
+    }
+
+    private static boolean isSepaChar(char c, boolean umlauts) {
+        if (c < 64) {
+            return (SEPA_TEXT_MASK_LOW >>> c & 1L) != 0;
+        }
+        if (c < 128) {
+            return (SEPA_TEXT_MASK_HIGH >>> (c - 64) & 1L) != 0;
+        }
+        return umlauts && isUmlaut(c);
+    }
+
+    private static boolean isUmlaut(char c) {
+        return c == 'ä' || c == 'ö' || c == 'ü' || c == 'Ä' || c == 'Ö' || c == 'Ü' || c == 'ß';
+    }
+
+    private static long sepaTextMask(int offset) {
+        long mask = 0L;
+        for (int i = 0; i < SEPA_TEXT_CHARS.length(); i++) {
+            int c = SEPA_TEXT_CHARS.charAt(i) - offset;
+            if (c >= 0 && c < 64) {
+                mask |= 1L << c;
             }
-            it.next();
         }
-        return decoded.toString();
+        return mask;
     }
 
     private static boolean isLetter(char c) {
         return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return isLetter(c) || isDigit(c);
+    }
+
+    private static boolean isX(char c) {
+        return c == 'x' || c == 'X';
+    }
+
 }
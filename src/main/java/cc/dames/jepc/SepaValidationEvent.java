@@ -0,0 +1,46 @@
+package cc.dames.jepc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of the {@link SepaUtils} validators, disabled by default.
+ * Enable with a JFR setting, e.g. {@code cc.dames.jepc.Validation#enabled=true}
+ */
+@Name("cc.dames.jepc.Validation")
+@Label("SEPA Validation")
+@Category("jEPC")
+@Description("Validation of a SEPA field")
+@Enabled(false)
+@StackTrace(false)
+final class SepaValidationEvent extends Event {
+
+    @Label("Validator")
+    String validator;
+
+    @Label("Input Length")
+    int inputLength;
+
+    @Label("Valid")
+    boolean valid;
+
+    /**
+     * Commits the event if enabled, the duration ends here
+     * @return valid
+     */
+    boolean finish(String validator, CharSequence value, boolean valid) {
+        if (shouldCommit()) {
+            this.validator = validator;
+            this.inputLength = value == null ? 0 : value.length();
+            this.valid = valid;
+            commit();
+        }
+        return valid;
+    }
+
+}
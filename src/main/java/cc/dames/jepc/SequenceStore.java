@@ -0,0 +1,20 @@
+package cc.dames.jepc;
+
+import java.io.IOException;
+
+/**
+ * Shared source of sequence numbers for {@link ScorAllocator}, e.g. a file, database row or coordination service
+ */
+@FunctionalInterface
+public interface SequenceStore {
+
+    /**
+     * Leases a block of numbers which is never leased again, also not after a restart.
+     * The new high-water mark must be persisted before returning.
+     * @param size number of sequence numbers
+     * @return first number of the block
+     * @throws IOException if the store is not available
+     */
+    long lease(int size) throws IOException;
+
+}
@@ -0,0 +1,20 @@
+package cc.dames.jepc;
+
+/**
+ * Assignment of input rows to the shards of an {@link EpcBatch}
+ */
+public enum ShardMode {
+
+    /**
+     * a row belongs to the shard of a stable hash of its key, or of its payment with duplicate detection, so
+     * duplicates meet in one shard; every node reads the whole input
+     */
+    KEY_HASH,
+
+    /**
+     * the input is split into byte ranges at line starts and a node reads only its own range; a payment is
+     * a duplicate only of earlier rows of its own shard
+     */
+    BYTE_RANGE
+
+}
@@ -0,0 +1,74 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountFormatTest {
+
+    @Test
+    void germanTest() {
+        assertEquals(123456L, AmountFormat.GERMAN.parseCents("1.234,56"));
+        assertEquals(123456L, AmountFormat.GERMAN.parseCents(" 1234,56 "));
+        assertEquals(100L, AmountFormat.GERMAN.parseCents("1"));
+        assertEquals(150L, AmountFormat.GERMAN.parseCents("1,5"));
+        assertEquals(50L, AmountFormat.GERMAN.parseCents(",5"));
+        assertEquals(AmountFormat.MAX_CENTS, AmountFormat.GERMAN.parseCents("999.999.999,99"));
+    }
+
+    @Test
+    void frenchTest() {
+        assertEquals(123456L, AmountFormat.FRENCH.parseCents("1 234,56"));
+        assertEquals(123456789L, AmountFormat.FRENCH.parseCents("1 234 567,89"));
+        assertEquals(123456L, AmountFormat.FRENCH.parseCents("1 234,56"));
+    }
+
+    @Test
+    void englishTest() {
+        assertEquals(123456L, AmountFormat.ENGLISH.parseCents("1,234.56"));
+        assertEquals(1L, AmountFormat.ENGLISH.parseCents("0.01"));
+        assertEquals(AmountFormat.ENGLISH.parseCents("1234.56"), AmountFormat.of('.', "").parseCents("1234.56"));
+    }
+
+    @Test
+    void roundingTest() {
+        for (String value : new String[]{"1.005", "1.015", "1.0051", "1.0149", "1.025", "1.035000", "2.999"}) {
+            BigDecimal expected = SepaUtils.bankersRounding(new BigDecimal(value));
+            assertEquals(expected.unscaledValue().longValue(), AmountFormat.ENGLISH.parseCents(value), value);
+        }
+    }
+
+    @Test
+    void invalidTest() {
+        for (String value : new String[]{"", "  ", "1.23,45", "12.34.567,00", "1..234,00", ".123,00", "1.234.,00",
+                "1,2,3", "1.234,5x", "-1,00", "+1,00", "1.234 ,00", "EUR1,00", ","}) {
+            EpcException thrown = assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents(value), value);
+            assertEquals("transferAmount", thrown.getField());
+        }
+        assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents(null));
+        assertThrows(EpcException.class, () -> AmountFormat.of(',', ",."));
+        assertThrows(EpcException.class, () -> AmountFormat.of('1', "."));
+    }
+
+    @Test
+    void rangeTest() {
+        assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents("0,00"));
+        assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents("0,004"));
+        assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents("1.000.000.000"));
+        assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents("999.999.999,995"));
+        assertThrows(EpcException.class, () -> AmountFormat.GERMAN.parseCents("99999999999999999999999"));
+        assertEquals(1L, AmountFormat.GERMAN.parseCents("0,005000001"));
+    }
+
+    @Test
+    void builderTest() {
+        Epc.Builder epc = new Epc.Builder()
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount("1.234,56", AmountFormat.GERMAN);
+        assertEquals(new BigDecimal("1234.56"), epc.getTransferAmount());
+        assertTrue(epc.build().contains("\nEUR1234.56\n"));
+    }
+}
@@ -0,0 +1,107 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumInputValidatorTest {
+
+    @Test
+    void ibanTypingTest() {
+        IbanInputValidator validator = new IbanInputValidator();
+        assertEquals(InputState.INCOMPLETE, validator.getState());
+        assertEquals(InputState.INCOMPLETE, validator.append('D'));
+        assertEquals(InputState.INCOMPLETE, validator.append('e'));
+        assertEquals(IbanCountry.DE, validator.getCountry());
+        for (char c : "18 2004 1133 0823 1227 0".toCharArray()) {
+            assertEquals(InputState.INCOMPLETE, validator.append(c));
+        }
+        assertEquals(InputState.VALID, validator.append('0'));
+        assertEquals("DE18200411330823122700", validator.toString());
+        assertEquals(InputState.INVALID, validator.append('0'));
+        assertEquals(InputState.VALID, validator.deleteLast());
+        assertEquals(InputState.INCOMPLETE, validator.deleteLast());
+        assertEquals(InputState.INVALID, validator.append('1'));
+        assertEquals(InputState.INCOMPLETE, validator.deleteLast());
+    }
+
+    @Test
+    void ibanStructureTest() {
+        IbanInputValidator validator = new IbanInputValidator();
+        assertEquals(InputState.INVALID, validator.set("US"));
+        assertEquals(InputState.INVALID, validator.set("NL79R1"));
+        assertEquals(InputState.INCOMPLETE, validator.deleteLast());
+        assertEquals(InputState.INCOMPLETE, validator.set("NL79RA"));
+        assertEquals(InputState.VALID, validator.set("NL79 RABO 2423 5547 88"));
+        assertEquals(InputState.INVALID, validator.set("1"));
+        assertEquals(InputState.INCOMPLETE, validator.deleteLast());
+    }
+
+    @Test
+    void scorTypingTest() {
+        ScorInputValidator validator = new ScorInputValidator();
+        assertEquals(InputState.INCOMPLETE, validator.set("RF18 5390"));
+        assertEquals(InputState.VALID, validator.set("RF18 5390 0754 7034"));
+        assertEquals(InputState.INCOMPLETE, validator.append('1'));
+        assertEquals(InputState.VALID, validator.deleteLast());
+        assertEquals(InputState.INVALID, validator.set("rf18"));
+        assertEquals(InputState.INVALID, validator.set("RF1A"));
+        assertEquals(InputState.INVALID, validator.set("RF29z"));
+        assertEquals(InputState.VALID, validator.set("RF18000000000539007547034"));
+        assertEquals(InputState.INVALID, validator.append('1'));
+    }
+
+    @Test
+    void matchesValidateTest() {
+        Random random = new Random(42);
+        List<String> values = new ArrayList<>(List.of("DE18200411330823122700", "NL79RABO2423554788", "CH8589144649296413173",
+                "RF794723M108", "RF18 5390 0754 7034", "RF42U0SR08RDVSXQEAUQCQJ0R"));
+        for (int i = 0; i < 2000; i++) {
+            char[] chars = values.get(random.nextInt(6)).toCharArray();
+            chars[random.nextInt(chars.length)] = "0123456789ABRFZ ".charAt(random.nextInt(16));
+            values.add(new String(chars));
+        }
+        // blanks before and within the prefix
+        for (int i = 0; i < 200; i++) {
+            String value = values.get(random.nextInt(6));
+            int position = random.nextInt(4);
+            values.add(value.substring(0, position) + " " + value.substring(position));
+        }
+        IbanInputValidator iban = new IbanInputValidator();
+        ScorInputValidator scor = new ScorInputValidator();
+        for (String value : values) {
+            iban.clear();
+            scor.clear();
+            for (int i = 0; i < value.length(); i++) {
+                String prefix = value.substring(0, i + 1);
+                iban.append(value.charAt(i));
+                scor.append(value.charAt(i));
+                assertEquals(SepaUtils.validateIBAN(prefix), iban.getState() == InputState.VALID, prefix);
+                assertEquals(SepaUtils.validateSCOR(prefix), scor.getState() == InputState.VALID, prefix);
+            }
+            for (int i = value.length() - 1; i > 0; i--) {
+                String prefix = value.substring(0, i);
+                assertEquals(SepaUtils.validateIBAN(prefix), iban.deleteLast() == InputState.VALID, prefix);
+                assertEquals(SepaUtils.validateSCOR(prefix), scor.deleteLast() == InputState.VALID, prefix);
+            }
+        }
+    }
+
+    @Test
+    void overflowTest() {
+        IbanInputValidator validator = new IbanInputValidator();
+        validator.set("DE18200411330823122700");
+        for (int i = 0; i < 100; i++) {
+            validator.append(' ');
+        }
+        assertEquals(InputState.INVALID, validator.getState());
+        for (int i = 0; i < 100; i++) {
+            validator.deleteLast();
+        }
+        assertEquals(InputState.VALID, validator.getState());
+    }
+}
@@ -0,0 +1,72 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateFilterTest {
+
+    private static Epc.Builder request(String iban, String amount, String scor, String intendedUse) {
+        Epc.Builder request = new Epc.Builder()
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN(iban)
+                .withTransferAmount(new BigDecimal(amount));
+        return scor != null ? request.withScor(scor) : request.withIntendedUse(intendedUse);
+    }
+
+    @Test
+    void sizingTest() {
+        DuplicateFilter filter = new DuplicateFilter.Builder().withExpectedCount(1_000_000).withFalsePositiveRate(0.01).build();
+        assertEquals(7, filter.getHashCount());
+        assertEquals(9_585_088L, filter.getBitCount());
+        assertTrue(filter.isConfirmed());
+        assertThrows(EpcException.class, () -> new DuplicateFilter.Builder().withFalsePositiveRate(1));
+        assertThrows(EpcException.class, () -> new DuplicateFilter.Builder().withExpectedCount(0));
+    }
+
+    @Test
+    void normalizedTest() {
+        DuplicateFilter filter = new DuplicateFilter.Builder().withExpectedCount(100).build();
+        assertTrue(filter.add(request("DE33100205000001194700", "123.45", "RF18539007547034", null)));
+        assertFalse(filter.add(request("DE33 1002 0500 0001 1947 00", "123.450", "RF18 5390 0754 7034", null)));
+        assertFalse(filter.add(request("de33100205000001194700", "123.45", "rf18539007547034", null)));
+        assertTrue(filter.add(request("DE33100205000001194700", "123.46", "RF18539007547034", null)));
+        assertTrue(filter.add(request("DE33100205000001194700", "123.45", null, "Invoice 1")));
+        assertFalse(filter.add(request("DE33100205000001194700", "123.45", null, "Invoice 1")));
+        assertTrue(filter.add(request("DE33100205000001194700", "123.45", null, "invoice 1")));
+        assertTrue(filter.add(request("DE33100205000001194700", "123.45", null, "RF18539007547034")));
+        assertEquals(3L, filter.getDuplicates());
+    }
+
+    @Test
+    void confirmTest() {
+        // a filter far too small, most positives are false and rejected by the confirm set
+        DuplicateFilter filter = new DuplicateFilter.Builder().withExpectedCount(100).withFalsePositiveRate(0.1).build();
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(3L).withInvalidRatio(0).build();
+        for (long i = 0; i < 20_000; i++) {
+            assertTrue(filter.add(generator.record(i).getRequest()));
+        }
+        assertTrue(filter.getFalsePositives() > 0);
+        assertEquals(0L, filter.getDuplicates());
+        for (long i = 0; i < 20_000; i += 100) {
+            assertFalse(filter.add(generator.record(i).getRequest()));
+        }
+        assertEquals(200L, filter.getDuplicates());
+    }
+
+    @Test
+    void unconfirmedTest() {
+        DuplicateFilter filter = new DuplicateFilter.Builder().withExpectedCount(10_000).withFalsePositiveRate(0.01)
+                .withConfirm(false).build();
+        assertFalse(filter.isConfirmed());
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(4L).withInvalidRatio(0).build();
+        for (long i = 0; i < 10_000; i++) {
+            filter.add(generator.record(i).getRequest());
+        }
+        // false positives at about the configured rate
+        assertTrue(filter.getDuplicates() < 300, () -> "duplicates " + filter.getDuplicates());
+        assertFalse(filter.add(generator.record(17).getRequest()));
+    }
+}
@@ -0,0 +1,174 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpcArchiveTest {
+
+    private static Epc.Builder request(long invoice) {
+        return new Epc.Builder()
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withIntendedUse("Invoice " + invoice);
+    }
+
+    @Test
+    void appendReadTest(@TempDir Path dir) throws Exception {
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            assertEquals(0L, archive.append(request(0)));
+            assertEquals(1L, archive.append(request(1).withCharacterEncoding(2).withUmlauts(true).withMessage("Grüße")));
+            assertEquals(2L, archive.size());
+
+            assertEquals(request(0).build(), archive.readString(0));
+            assertEquals(request(1).withCharacterEncoding(2).withUmlauts(true).withMessage("Grüße").build(), archive.readString(1));
+            ByteBuffer payload = archive.read(0);
+            assertTrue(payload.isReadOnly());
+            assertEquals(request(0).build().length(), payload.remaining());
+            assertNull(archive.read(2));
+        }
+    }
+
+    @Test
+    void writeTest(@TempDir Path dir) throws Exception {
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            archive.write(40, request(40));
+            assertEquals(41L, archive.size());
+            assertEquals(request(40).build(), archive.readString(40));
+            assertNull(archive.read(39));
+            assertThrows(EpcException.class, () -> archive.write(40, request(41)));
+            assertEquals(41L, archive.append(request(41)));
+            assertTrue(Files.exists(dir.resolve("segment-00000002.epc")));
+        }
+    }
+
+    @Test
+    void invalidTest(@TempDir Path dir) throws Exception {
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            assertThrows(EpcException.class, () -> archive.append(request(0).withTransferAmount(BigDecimal.ZERO)));
+            Epc.Builder oversized = request(1).withUmlauts(true).withIssuer("ä".repeat(70))
+                    .withIntendedUse("ü".repeat(140)).withMessage("ö".repeat(70));
+            assertDoesNotThrow(() -> oversized.build());
+            assertThrows(EpcException.class, () -> archive.append(oversized));
+            assertEquals(2L, archive.append(request(1)));
+            assertNull(archive.read(1));
+            assertNull(archive.read(0));
+        }
+        assertThrows(EpcException.class, () -> EpcArchive.open(dir, 32));
+    }
+
+    @Test
+    void reopenTest(@TempDir Path dir) throws Exception {
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            for (int i = 0; i < 20; i++) {
+                archive.append(request(i));
+            }
+        }
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            assertEquals(20L, archive.size());
+            assertEquals(20L, archive.append(request(20)));
+            assertEquals(request(7).build(), archive.readString(7));
+            List<Long> indexes = new ArrayList<>();
+            archive.scan(5, (payload, index) -> {
+                assertEquals(request(index).build(), EpcArchive.decode(payload));
+                indexes.add(index);
+            });
+            assertEquals(16, indexes.size());
+            assertEquals(5L, indexes.get(0));
+        }
+    }
+
+    @Test
+    void parallelAppendTest(@TempDir Path dir) throws Exception {
+        Set<Long> indexes = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (EpcArchive archive = EpcArchive.open(dir, 1000)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        long index = archive.append(request(i));
+                        assertTrue(indexes.add(index));
+                        assertEquals(request(i).build(), archive.readString(index));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(16000L, archive.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentWriteReadTest(@TempDir Path dir) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (EpcArchive archive = EpcArchive.open(dir, 64)) {
+            for (long index = 0; index < 200; index++) {
+                long slot = index;
+                List<Future<Boolean>> writers = new ArrayList<>();
+                for (int thread = 0; thread < 4; thread++) {
+                    writers.add(executor.submit(() -> {
+                        try {
+                            archive.write(slot, request((int) slot));
+                            return true;
+                        } catch (EpcException e) {
+                            return false;
+                        }
+                    }));
+                }
+                Future<?> reader = executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        String payload = archive.readString(slot);
+                        assertTrue(payload == null || payload.equals(request((int) slot).build()), payload);
+                    }
+                });
+                int written = 0;
+                for (Future<Boolean> writer : writers) {
+                    written += writer.get() ? 1 : 0;
+                }
+                reader.get();
+                assertEquals(1, written);
+                assertEquals(request((int) slot).build(), archive.readString(slot));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void recoverClaimedTest(@TempDir Path dir) throws Exception {
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            archive.append(request(0));
+            archive.append(request(1));
+        }
+        // a writer died after claiming slot 2
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-00000000.epc"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1}), 2L * EpcArchive.SLOT_SIZE);
+        }
+        try (EpcArchive archive = EpcArchive.open(dir, 16)) {
+            assertEquals(2L, archive.size());
+            assertNull(archive.read(2));
+            assertEquals(2L, archive.append(request(2)));
+            assertEquals(request(2).build(), archive.readString(2));
+        }
+    }
+}
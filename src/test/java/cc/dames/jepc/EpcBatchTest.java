@@ -0,0 +1,339 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpcBatchTest {
+
+    private static final String FIRST = "INV-1\tDE33100205000001194700\t\tWikimedia Foerdergesellschaft\t123.45\t\t\tInvoice 1";
+
+    private static final String SECOND = "INV-2\tDE33100205000001194700\t\tWikimedia Foerdergesellschaft\t10.00\t\t\tInvoice 2";
+
+    private static final String REPEATED = "INV-1b\tDE33 1002 0500 0001 1947 00\t\tWikimedia\t123.450\t\t\tInvoice 1";
+
+    private static final String INVALID = "INV-3\tDE33100205000001194700\t\tWikimedia Foerdergesellschaft\t0";
+
+    @Test
+    void runTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        Path output = dir.resolve("output.tsv");
+        Files.write(input, List.of(FIRST, SECOND, REPEATED, INVALID));
+
+        EpcBatchResult result = new EpcBatch.Builder().withInput(input).withOutput(output).build().run();
+        assertEquals(4L, result.getRows());
+        assertEquals(3L, result.getPayloads());
+        assertEquals(0L, result.getDuplicates());
+        assertEquals(1L, result.getErrors());
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(4, lines.size());
+        assertEquals("0\tINV-1\tOK\tBCD\t002\t1\tSCT\t\tWikimedia Foerdergesellschaft\tDE33100205000001194700\tEUR123.45\t\t\tInvoice 1",
+                lines.get(0));
+        assertEquals("3\tINV-3\tERROR\ttransferAmount\ttransfer amount is out of valid range, (0.01 - 999999999.99)",
+                lines.get(3));
+    }
+
+    @Test
+    void duplicateTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        Files.write(input, List.of(FIRST, SECOND, REPEATED, INVALID, FIRST));
+
+        Path flagged = dir.resolve("flagged.tsv");
+        EpcBatchResult result = new EpcBatch.Builder().withInput(input).withOutput(flagged)
+                .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(10).build(), DuplicateMode.FLAG)
+                .build().run();
+        assertEquals(2L, result.getPayloads());
+        assertEquals(2L, result.getDuplicates());
+        List<String> lines = Files.readAllLines(flagged);
+        assertEquals(5, lines.size());
+        assertEquals("2\tINV-1b\tDUPLICATE", lines.get(2));
+        assertEquals("4\tINV-1\tDUPLICATE", lines.get(4));
+
+        Path dropped = dir.resolve("dropped.tsv");
+        result = new EpcBatch.Builder().withInput(input).withOutput(dropped)
+                .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(10).build(), DuplicateMode.DROP)
+                .build().run();
+        assertEquals(5L, result.getRows());
+        assertEquals(2L, result.getDuplicates());
+        lines = Files.readAllLines(dropped);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(2).startsWith("3\tINV-3\tERROR"));
+    }
+
+    @Test
+    void generatedTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        Path output = dir.resolve("output.tsv");
+        new EpcDataGenerator.Builder().withSeed(9L).build().writeTo(input, 2000);
+
+        EpcBatchResult result = new EpcBatch.Builder().withInput(input).withOutput(output)
+                .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(2000).build(), DuplicateMode.DROP)
+                .build().run();
+        assertEquals(2000L, result.getRows());
+        assertEquals(0L, result.getDuplicates());
+        assertEquals(result.getRows(), result.getPayloads() + result.getErrors());
+        assertTrue(result.getErrors() > 0);
+        assertEquals(2000, Files.readAllLines(output).size());
+    }
+
+    @Test
+    void shardTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        new EpcDataGenerator.Builder().withSeed(11L).build().writeTo(input, 3000);
+        Path expected = dir.resolve("expected.tsv");
+        new EpcBatch.Builder().withInput(input).withOutput(expected).build().run();
+
+        List<Path> outputs = new ArrayList<>();
+        long rows = 0;
+        for (int shard = 0; shard < 4; shard++) {
+            Path output = dir.resolve("shard-" + shard + ".tsv");
+            rows += new EpcBatch.Builder().withInput(input).withOutput(output).withShard(shard, 4).build().run().getRows();
+            outputs.add(output);
+            assertTrue(Files.size(output) > 0);
+        }
+        assertEquals(3000L, rows);
+
+        Path merged = dir.resolve("merged.tsv");
+        assertEquals(3000L, EpcBatch.merge(outputs, merged));
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(merged));
+        assertThrows(EpcException.class, () -> new EpcBatch.Builder().withShard(4, 4));
+    }
+
+    @Test
+    void shardStableTest() {
+        // the assignment must not change between releases or JVMs
+        assertEquals(2, EpcBatch.shard("INV-1", 7));
+        assertEquals(1, EpcBatch.shard("INV-2", 7));
+        assertEquals(545, EpcBatch.shard("A", 1000));
+        assertEquals(2, EpcBatch.shard(new StringBuilder("INV-1"), 7));
+        int[] counts = new int[8];
+        for (int i = 0; i < 8000; i++) {
+            counts[EpcBatch.shard("INV-" + i, 8)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 850 && count < 1150, () -> "shard size " + count);
+        }
+    }
+
+    @Test
+    void splitTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        // CRLF, an empty line and a line longer than a shard, no line feed at the end
+        String text = FIRST + "\r\n" + SECOND + "\n\n" + INVALID + "\n" + FIRST + "x".repeat(500) + "\n" + REPEATED;
+        Files.writeString(input, text, StandardCharsets.UTF_8);
+        Path expected = dir.resolve("expected.tsv");
+        new EpcBatch.Builder().withInput(input).withOutput(expected).build().run();
+        assertEquals(6, Files.readAllLines(expected).size());
+
+        for (int shards = 2; shards <= 12; shards++) {
+            List<Path> outputs = new ArrayList<>();
+            long rows = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                Path output = dir.resolve("shard-" + shard + ".tsv");
+                rows += new EpcBatch.Builder().withInput(input).withOutput(output)
+                        .withShard(shard, shards, ShardMode.BYTE_RANGE).build().run().getRows();
+                outputs.add(output);
+            }
+            assertEquals(6L, rows, "shards " + shards);
+            Path merged = dir.resolve("merged.tsv");
+            assertEquals(6L, EpcBatch.merge(outputs, merged));
+            assertEquals(Files.readAllLines(expected), Files.readAllLines(merged), "shards " + shards);
+
+            List<Path> swapped = new ArrayList<>(outputs);
+            swapped.set(0, outputs.get(1));
+            swapped.set(1, outputs.get(0));
+            assertThrows(EpcException.class, () -> EpcBatch.merge(swapped, merged));
+            assertThrows(EpcException.class, () -> EpcBatch.merge(outputs.subList(0, outputs.size() - 1), merged));
+            // shards of the other mode
+            Path hashed = dir.resolve("hashed.tsv");
+            new EpcBatch.Builder().withInput(input).withOutput(hashed).withShard(1, shards).build().run();
+            swapped.set(0, outputs.get(0));
+            swapped.set(1, hashed);
+            assertThrows(EpcException.class, () -> EpcBatch.merge(swapped, merged));
+        }
+        assertThrows(EpcException.class, () -> EpcBatch.merge(List.of(expected), dir.resolve("merged.tsv")));
+        assertEquals(0L, EpcBatch.split(10L, 0, 3));
+        assertEquals(6L, EpcBatch.split(10L, 2, 3));
+        assertEquals(Long.MAX_VALUE / 7 * 3, EpcBatch.split(Long.MAX_VALUE / 7 * 7, 3, 7));
+    }
+
+    @Test
+    void shardDuplicateTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        Files.write(input, List.of(FIRST, FIRST, SECOND, REPEATED, INVALID));
+        Path expected = dir.resolve("expected.tsv");
+        new EpcBatch.Builder().withInput(input).withOutput(expected)
+                .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(10).build(), DuplicateMode.FLAG)
+                .build().run();
+        assertEquals("3\tINV-1b\tDUPLICATE", Files.readAllLines(expected).get(3));
+
+        // by key hash duplicates share the shard of their payment, also REPEATED with a key of another shard
+        assertNotEquals(EpcBatch.shard("INV-1", 2), EpcBatch.shard("INV-1b", 2));
+        Path merged = dir.resolve("merged.tsv");
+        for (int shards = 2; shards <= 5; shards++) {
+            EpcBatch.merge(shard(input, dir, shards, ShardMode.KEY_HASH), merged);
+            assertEquals(Files.readAllLines(expected), Files.readAllLines(merged), "shards " + shards);
+        }
+
+        // by byte range duplicates are detected within a shard only: the second FIRST shares the shard of
+        // the first one, REPEATED is in the second shard and not flagged
+        EpcBatch.merge(shard(input, dir, 2, ShardMode.BYTE_RANGE), merged);
+        List<String> lines = Files.readAllLines(merged);
+        assertEquals("1\tINV-1\tDUPLICATE", lines.get(1));
+        assertTrue(lines.get(3).startsWith("3\tINV-1b\tOK\t"), lines.get(3));
+    }
+
+    private static List<Path> shard(Path input, Path dir, int shards, ShardMode mode) throws Exception {
+        List<Path> outputs = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            Path output = dir.resolve("shard-" + shard + ".tsv");
+            new EpcBatch.Builder().withInput(input).withOutput(output).withShard(shard, shards, mode)
+                    .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(10).build(), DuplicateMode.FLAG)
+                    .build().run();
+            outputs.add(output);
+        }
+        return outputs;
+    }
+
+    @Test
+    void processTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        new EpcDataGenerator.Builder().withSeed(12L).build().writeTo(input, 1000);
+        Path expected = dir.resolve("expected.tsv");
+        new EpcBatch.Builder().withInput(input).withOutput(expected).build().run();
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        List<Path> outputs = new ArrayList<>();
+        for (int shard = 0; shard < 3; shard++) {
+            Path output = dir.resolve("shard-" + shard + ".tsv");
+            outputs.add(output);
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), EpcBatch.class.getName(),
+                    input.toString(), output.toString(), String.valueOf(shard), "3")
+                    .redirectErrorStream(true).redirectOutput(dir.resolve("log-" + shard).toFile()).start());
+        }
+        for (Process process : processes) {
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            assertEquals(0, process.exitValue());
+        }
+        Path merged = dir.resolve("merged.tsv");
+        EpcBatch.merge(outputs, merged);
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(merged));
+    }
+
+    /**
+     * Runs a batch with checkpoints and duplicate detection in a child process, to be killed by the test
+     */
+    static final class ResumableRun {
+
+        public static void main(String[] args) throws Exception {
+            batch(Path.of(args[0]), Path.of(args[1]), Path.of(args[2])).run();
+        }
+
+        static EpcBatch batch(Path input, Path output, Path checkpoint) {
+            return new EpcBatch.Builder().withInput(input).withOutput(output).withCheckpoint(checkpoint, 500)
+                    .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(40000).build(), DuplicateMode.DROP)
+                    .build();
+        }
+    }
+
+    @Test
+    void resumeTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        Path expected = dir.resolve("expected.tsv");
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(13L).build();
+        List<String> lines = new ArrayList<>();
+        generator.stream(30000).forEach(record -> lines.add(record.format()));
+        // duplicates on both sides of the interruptions
+        lines.addAll(lines.subList(100, 200));
+        lines.add(1500, lines.get(25000));
+        Files.write(input, lines);
+        EpcBatchResult complete = new EpcBatch.Builder().withInput(input).withOutput(expected)
+                .withDuplicateFilter(new DuplicateFilter.Builder().withExpectedCount(40000).build(), DuplicateMode.DROP)
+                .build().run();
+
+        Path output = dir.resolve("output.tsv");
+        Path checkpoint = dir.resolve("output.checkpoint");
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        long row = 0;
+        for (int kill = 0; kill < 3; kill++) {
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ResumableRun.class.getName(), input.toString(), output.toString(), checkpoint.toString())
+                    .redirectErrorStream(true).redirectOutput(dir.resolve("log-" + kill).toFile()).start();
+            // killed once it checkpointed past the previous run, the output may be flushed beyond the checkpoint
+            long previous = row;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (row == previous) {
+                assertTrue(process.isAlive(), "run completed before it was killed");
+                assertTrue(System.nanoTime() < deadline);
+                if (Files.exists(checkpoint)) {
+                    row = BatchCheckpoint.read(checkpoint).row;
+                } else {
+                    Thread.sleep(1);
+                }
+            }
+            process.destroyForcibly();
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+
+            BatchCheckpoint state = BatchCheckpoint.read(checkpoint);
+            assertTrue(state.row >= row && state.row < lines.size(), () -> "checkpoint at row " + state.row);
+            assertEquals(0L, state.row % 500);
+            assertTrue(state.outputOffset <= Files.size(output));
+            row = state.row;
+        }
+        EpcBatchResult result = ResumableRun.batch(input, output, checkpoint).run();
+
+        assertFalse(Files.exists(checkpoint));
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(output));
+        assertEquals(complete.getRows(), result.getRows());
+        assertEquals(complete.getPayloads(), result.getPayloads());
+        assertEquals(complete.getDuplicates(), result.getDuplicates());
+        assertTrue(result.getDuplicates() > 80);
+        assertEquals(complete.getErrors(), result.getErrors());
+    }
+
+    @Test
+    void checkpointTest(@TempDir Path dir) throws Exception {
+        Path input = dir.resolve("input.tsv");
+        Files.write(input, List.of(FIRST, SECOND, INVALID, REPEATED));
+        Path expected = dir.resolve("expected.tsv");
+        new EpcBatch.Builder().withInput(input).withOutput(expected).build().run();
+        List<String> lines = Files.readAllLines(expected);
+
+        // state of a run killed after the checkpoint at row 2, its output flushed past the checkpoint
+        BatchCheckpoint state = new BatchCheckpoint();
+        state.row = 2;
+        state.rows = 2;
+        state.payloads = 2;
+        state.inputOffset = (FIRST + "\n" + SECOND + "\n").getBytes(StandardCharsets.UTF_8).length;
+        state.outputOffset = (lines.get(0) + "\n" + lines.get(1) + "\n").getBytes(StandardCharsets.UTF_8).length;
+        Path checkpoint = dir.resolve("checkpoint");
+        state.write(checkpoint);
+        assertEquals(state.inputOffset, BatchCheckpoint.read(checkpoint).inputOffset);
+        Path output = dir.resolve("output.tsv");
+        Files.write(output, List.of(lines.get(0), lines.get(1), lines.get(2), "garbage"));
+
+        // rows after the checkpoint are written once
+        EpcBatchResult result = new EpcBatch.Builder().withInput(input).withOutput(output).withCheckpoint(checkpoint, 2)
+                .build().run();
+        assertEquals(4L, result.getRows());
+        assertEquals(3L, result.getPayloads());
+        assertEquals(lines, Files.readAllLines(output));
+        assertFalse(Files.exists(checkpoint));
+
+        // a checkpoint beyond the output can not be resumed
+        state.write(checkpoint);
+        Files.write(output, List.of(lines.get(0)));
+        assertThrows(EpcException.class, () -> new EpcBatch.Builder().withInput(input).withOutput(output)
+                .withCheckpoint(checkpoint, 2).build().run());
+    }
+}
@@ -0,0 +1,120 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpcCodecTest {
+
+    @Test
+    void roundTripTest() {
+        Epc.Builder request = new Epc.Builder()
+                .withVersion(Version.V001)
+                .withLineFeed(LineFeed.CRLF)
+                .withBIC("BFSWDE33BER")
+                .withIssuer("Wikimedia Fördergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withSepaPurpose(SepaPurpose.CHAR)
+                .withIntendedUse("Spende")
+                .withUmlauts(true)
+                .withMessage("Bitte innerhalb der nächsten 14 Tage überweisen");
+
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        int length = EpcCodec.encode(request, buffer);
+        assertEquals(length, buffer.position());
+        assertTrue(length < request.build().length());
+
+        buffer.flip();
+        Epc.Builder decoded = EpcCodec.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(request.build(), decoded.build());
+    }
+
+    @Test
+    void scorRoundTripTest() {
+        Epc.Builder request = new Epc.Builder()
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("nl79rabo2423554788")
+                .withTransferAmount("999999999.99")
+                .withScor("RF18 5390 0754 7034");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(512);
+        EpcCodec.encode(request, buffer);
+        buffer.flip();
+        assertEquals(request.build(), EpcCodec.decode(buffer).build());
+    }
+
+    @Test
+    void sequenceTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (int i = 0; i < 20; i++) {
+            EpcCodec.encode(request(i), buffer);
+        }
+        buffer.flip();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(request(i).build(), EpcCodec.decode(buffer).build());
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void unsetFieldsTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        EpcCodec.encode(new Epc.Builder(), buffer);
+        buffer.flip();
+
+        Epc.Builder decoded = EpcCodec.decode(buffer);
+        assertNull(decoded.getIban());
+        assertNull(decoded.getTransferAmount());
+        assertNull(decoded.getSepaPurpose());
+        EpcException thrown = assertThrows(EpcException.class, decoded::build);
+        assertEquals("iban", thrown.getField());
+    }
+
+    @Test
+    void negativeAmountTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        EpcCodec.encode(new Epc.Builder().withTransferAmount(new BigDecimal("-0.015")), buffer);
+        buffer.flip();
+        assertEquals(new BigDecimal("-0.02"), EpcCodec.decode(buffer).getTransferAmount());
+    }
+
+    @Test
+    void invalidTest() {
+        assertThrows(EpcException.class, () -> EpcCodec.encode(new Epc.Builder().withIBAN("DE33-1002"), ByteBuffer.allocate(64)));
+        ByteBuffer small = ByteBuffer.allocate(16);
+        small.put((byte) 42);
+        assertThrows(BufferOverflowException.class, () -> EpcCodec.encode(request(1), small));
+        assertEquals(1, small.position());
+        ByteBuffer target = ByteBuffer.allocate(64);
+        assertThrows(EpcException.class, () -> EpcCodec.encode(new Epc.Builder().withIBAN("DE33-1002"), target));
+        assertEquals(0, target.position());
+        assertThrows(EpcException.class, () -> EpcCodec.decode(ByteBuffer.wrap(new byte[]{2, 0, 1})));
+
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        EpcCodec.encode(request(1), buffer);
+        buffer.flip().limit(buffer.limit() - 1);
+        assertThrows(BufferUnderflowException.class, () -> EpcCodec.decode(buffer));
+
+        // issuer length -1 as varint, then an issuer length beyond the end
+        byte[] negative = {1, 0, 1, 0, 0, 0, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1};
+        assertThrows(EpcException.class, () -> EpcCodec.decode(ByteBuffer.wrap(negative)));
+        byte[] beyond = {1, 0, 1, 0, 0, 0, -1, -1, -1, -1, 7};
+        assertThrows(BufferUnderflowException.class, () -> EpcCodec.decode(ByteBuffer.wrap(beyond)));
+    }
+
+    private static Epc.Builder request(int i) {
+        return new Epc.Builder()
+                .withIssuer("Issuer " + i)
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(BigDecimal.valueOf(i * 1000L + 1, 2))
+                .withSepaPurpose(SepaPurpose.values()[i % SepaPurpose.values().length])
+                .withScor(SepaUtils.createSCOR("INV" + i));
+    }
+}
@@ -0,0 +1,70 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpcDataGeneratorTest {
+
+    @Test
+    void deterministicTest() {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(7L).build();
+        List<String> sequential = generator.stream(500).map(EpcRecord::format).collect(Collectors.toList());
+        List<String> parallel = generator.stream(500).parallel().map(EpcRecord::format).collect(Collectors.toList());
+
+        assertEquals(sequential, parallel);
+        assertEquals(sequential.get(42), new EpcDataGenerator.Builder().withSeed(7L).build().record(42).format());
+        assertNotEquals(sequential.get(42), new EpcDataGenerator.Builder().withSeed(8L).build().record(42).format());
+    }
+
+    @Test
+    void validRecordsTest() {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(1L).withInvalidRatio(0).build();
+        Set<IbanCountry> countries = EnumSet.noneOf(IbanCountry.class);
+        generator.stream(5000).forEach(record -> {
+            Epc.Builder request = record.getRequest();
+            assertDoesNotThrow(() -> request.build(), record.format());
+            assertTrue(SepaUtils.validateIBAN(request.getIban()));
+            countries.add(IbanCountry.of(request.getIban()));
+        });
+        assertEquals(EnumSet.allOf(IbanCountry.class), countries);
+    }
+
+    @Test
+    void invalidRatioTest() {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(1L).withInvalidRatio(0.25).build();
+        long invalid = generator.stream(4000).filter(record -> {
+            try {
+                record.getRequest().build();
+                return false;
+            } catch (EpcException e) {
+                return true;
+            }
+        }).count();
+        assertEquals(1000, invalid, 100);
+    }
+
+    @Test
+    void writeToTest(@TempDir Path dir) throws IOException {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(3L).withInvalidRatio(0.1).build();
+        Path file = dir.resolve("records.tsv");
+        generator.writeTo(file, 1000);
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1000, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            EpcRecord record = EpcRecord.parse(lines.get(i));
+            assertEquals(String.valueOf(i), record.getKey());
+            assertEquals(generator.record(i).format(), record.format());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpcPayloadsTest {
+
+    private static boolean fits(Epc.Builder request) {
+        return request.getPayloadSize() <= Epc.MAX_PAYLOAD_BYTES;
+    }
+
+    @Test
+    void addTest() {
+        List<Epc.Builder> requests = new EpcDataGenerator.Builder().withSeed(3L).withInvalidRatio(0).build()
+                .stream(2000).map(EpcRecord::getRequest).filter(EpcPayloadsTest::fits).collect(Collectors.toList());
+        EpcPayloads payloads = new EpcPayloads();
+        long bytes = 0;
+        ByteBuffer expected = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(i, payloads.add(requests.get(i)));
+            expected.clear();
+            bytes += requests.get(i).build(expected);
+        }
+        assertEquals(requests.size(), payloads.size());
+        // generated issuers and intended uses are mostly unique, the header rows are shared
+        assertTrue(payloads.getRowBytes() < bytes - 10L * requests.size(), payloads.getRowBytes() + " of " + bytes);
+        assertTrue(payloads.getRowCount() < 12 * requests.size());
+
+        ByteBuffer actual = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).build(), payloads.getString(i));
+            expected.clear();
+            requests.get(i).build(expected);
+            actual.clear();
+            assertEquals(expected.position(), payloads.get(i, actual));
+            assertEquals(expected.flip(), actual.flip());
+            assertEquals(expected.limit(), payloads.getPayloadSize(i));
+        }
+    }
+
+    @Test
+    void rowsTest() {
+        EpcPayloads payloads = new EpcPayloads();
+        Epc.Builder request = new Epc.Builder()
+                .withIssuer("Wikimedia Fördergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withIntendedUse("Spende")
+                .withUmlauts(true)
+                .withCharacterEncoding(2);
+        payloads.add(request);
+        int rows = payloads.getRowCount();
+        assertEquals(9, rows); // the empty BIC, purpose and SCOR rows share one
+        payloads.add(request.withTransferAmount(new BigDecimal("5")));
+        assertEquals(rows + 1, payloads.getRowCount());
+        assertEquals(request.build(), payloads.getString(1));
+        assertEquals(11, payloads.views(1).length);
+
+        ByteBuffer crlf = ByteBuffer.wrap("xBCD\r\n002\r\n2".getBytes(StandardCharsets.US_ASCII));
+        crlf.position(1);
+        assertEquals(2, payloads.add(crlf));
+        assertEquals(1, crlf.position());
+        assertEquals("BCD\r\n002\r\n2", payloads.getString(2));
+
+        assertThrows(BufferOverflowException.class, () -> payloads.get(0, ByteBuffer.allocate(10)));
+        assertThrows(IndexOutOfBoundsException.class, () -> payloads.views(3));
+        assertThrows(EpcException.class, () -> payloads.add(new Epc.Builder()));
+        assertEquals(3, payloads.size());
+    }
+
+    @Test
+    void writeTest(@TempDir Path dir) throws Exception {
+        List<Epc.Builder> requests = new EpcDataGenerator.Builder().withSeed(5L).withInvalidRatio(0).build()
+                .stream(200).map(EpcRecord::getRequest).filter(EpcPayloadsTest::fits).collect(Collectors.toList());
+        EpcPayloads payloads = new EpcPayloads();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        for (Epc.Builder request : requests) {
+            payloads.add(request);
+            buffer.clear();
+            request.build(buffer);
+            expected.write(buffer.array(), 0, buffer.position());
+        }
+        Path file = dir.resolve("payloads.bin");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < payloads.size(); i++) {
+                assertEquals(payloads.getPayloadSize(i), payloads.write(i, out));
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,54 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpcRecordTest {
+
+    @Test
+    void formatTest() {
+        Epc.Builder request = new Epc.Builder()
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withSepaPurpose(SepaPurpose.CHAR)
+                .withIntendedUse("Spende");
+
+        assertEquals("4711\tDE33100205000001194700\t\tWikimedia Foerdergesellschaft\t123.45\tCHAR\t\tSpende",
+                new EpcRecord("4711", request).format());
+    }
+
+    @Test
+    void parseTest() {
+        EpcRecord record = EpcRecord.parse("4711\tDE33 1002 0500 0001 1947 00\tBFSWDE33BER\tWikimedia Foerdergesellschaft\t123,45\t\tRF18 5390 0754 7034\t\tDanke");
+
+        assertEquals("4711", record.getKey());
+        assertEquals("DE33100205000001194700", record.getRequest().getIban());
+        assertEquals("BFSWDE33BER", record.getRequest().getBic());
+        assertEquals(new BigDecimal("123.45"), record.getRequest().getTransferAmount());
+        assertNull(record.getRequest().getSepaPurpose());
+        assertEquals("RF18 5390 0754 7034", record.getRequest().getScor());
+        assertNull(record.getRequest().getIntendedUse());
+        assertEquals("Danke", record.getRequest().getMessage());
+    }
+
+    @Test
+    void parseShortLineTest() {
+        EpcRecord record = EpcRecord.parse("1\tDE33100205000001194700");
+        assertEquals("1", record.getKey());
+        assertEquals("DE33100205000001194700", record.getRequest().getIban());
+        assertNull(record.getRequest().getIssuer());
+        assertEquals("", EpcRecord.parse("").getKey());
+    }
+
+    @Test
+    void invalidTest() {
+        assertThrows(EpcException.class, () -> EpcRecord.parse("1\t\t\t\t\t\t\t\t\t"));
+        assertEquals("transferAmount", assertThrows(EpcException.class, () -> EpcRecord.parse("1\t\t\t\tabc")).getField());
+        assertEquals("sepaPurpose", assertThrows(EpcException.class, () -> EpcRecord.parse("1\t\t\t\t1.00\tXXXX")).getField());
+        assertThrows(EpcException.class, () -> new EpcRecord("1", new Epc.Builder().withMessage("a\tb")).format());
+    }
+}
@@ -1,8 +1,18 @@
 package cc.dames.jepc;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -333,4 +343,98 @@ class EpcTest {
         assertEquals(12, generated.split("\n").length);
     }
 
+    @Test
+    void testFailedFieldEpc() {
+        Epc.Builder epc = new Epc.Builder();
+        epc
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("DE33100205000001194701")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withMessage("Bitte innerhalb der nächsten 14 Tage überweisen");
+
+        EpcException thrown = assertThrows(EpcException.class, epc::build);
+        assertEquals("message", thrown.getField());
+    }
+
+    @Test
+    void testBuildEventEpc(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("epc.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("cc.dames.jepc.Build");
+            recording.start();
+            new Epc.Builder()
+                    .withIssuer("Wikimedia Fördergesellschaft")
+                    .withIBAN("DE33100205000001194700")
+                    .withTransferAmount(new BigDecimal("123.45"))
+                    .withUmlauts(true)
+                    .build();
+            assertThrows(EpcException.class, () -> new Epc.Builder()
+                    .withIBAN("DE33100205000001194700")
+                    .withTransferAmount(new BigDecimal("0"))
+                    .build());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("cc.dames.jepc.Build"))
+                .collect(Collectors.toList());
+        assertEquals(2, events.size());
+        assertEquals("002", events.get(0).getString("version"));
+        assertEquals(81, events.get(0).getInt("payloadSize"));
+        assertNull(events.get(0).getString("failedField"));
+        assertEquals("transferAmount", events.get(1).getString("failedField"));
+    }
+
+    @Test
+    void testBuildByteBufferEpc() {
+        Epc.Builder epc = new Epc.Builder()
+                .withIssuer("Wikimedia Fördergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withUmlauts(true);
+
+        ByteBuffer target = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        target.put((byte) 42);
+        assertEquals(81, epc.build(target));
+        assertEquals(82, target.position());
+        assertEquals(epc.build(), new String(target.array(), 1, 81, StandardCharsets.UTF_8));
+
+        target.clear();
+        assertEquals(80, epc.withCharacterEncoding(2).build(target));
+        assertEquals(epc.build(), new String(target.array(), 0, 80, StandardCharsets.ISO_8859_1));
+
+        ByteBuffer small = ByteBuffer.allocate(40);
+        assertThrows(BufferOverflowException.class, () -> epc.build(small));
+        assertEquals(0, small.position());
+    }
+
+    @Test
+    void testAutomaticCharacterEncodingEpc() {
+        Epc.Builder epc = new Epc.Builder()
+                .withCharacterEncoding(Epc.AUTOMATIC_CHARACTER_ENCODING)
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withUmlauts(true);
+        // checked on build, a value set out of range can be corrected before
+        epc.withCharacterEncoding(9).withCharacterEncoding(Epc.AUTOMATIC_CHARACTER_ENCODING);
+        assertEquals("1", epc.build().split("\n")[2]);
+        assertEquals(1, epc.getEffectiveCharacterEncoding());
+        assertEquals(81, epc.getPayloadSize());
+
+        epc.withIssuer("Wikimedia Fördergesellschaft").withMessage("Spende für Bücher");
+        String payload = epc.build();
+        assertEquals("2", payload.split("\n")[2]);
+        assertEquals(2, epc.getEffectiveCharacterEncoding());
+        assertEquals(payload.length(), epc.getPayloadSize());
+        ByteBuffer target = ByteBuffer.allocate(Epc.MAX_PAYLOAD_BYTES);
+        assertEquals(payload.length(), epc.build(target));
+        assertEquals(payload, new String(target.array(), 0, target.position(), StandardCharsets.ISO_8859_1));
+
+        int utf8 = epc.withCharacterEncoding(1).getPayloadSize();
+        assertEquals(epc.build().getBytes(StandardCharsets.UTF_8).length, utf8);
+        assertEquals(payload.length() + 3, utf8);
+    }
+
 }
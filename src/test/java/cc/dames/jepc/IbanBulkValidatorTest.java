@@ -0,0 +1,133 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IbanBulkValidatorTest {
+
+    private static final String[] IBANS = {
+            "DE18200411330823122700",
+            "DE19200411330823122700",
+            "NL79RABO2423554788",
+            "",
+            "CH8589144649296413173",
+            "US18200411330823122700",
+            "AT83540003761845439",
+            "NL791ABO2423554788",
+            "AT83 5400 0376 1845 4391"
+    };
+
+    @Test
+    void validateDelimitedTest() {
+        IbanBulkResult result = IbanBulkValidator.validateDelimited(buffer(String.join("\r\n", IBANS) + "\r\n"), (byte) '\n');
+
+        assertEquals(9, result.getRows());
+        assertEquals(4, result.getValidCount());
+        assertTrue(result.getValid().get(0));
+        assertTrue(result.getValid().get(2));
+        assertTrue(result.getValid().get(4));
+        assertTrue(result.getValid().get(8));
+        assertEquals(IbanFailure.CHECKSUM, result.getFailures().get(1));
+        assertEquals(IbanFailure.EMPTY, result.getFailures().get(3));
+        assertEquals(IbanFailure.UNKNOWN_COUNTRY, result.getFailures().get(5));
+        assertEquals(IbanFailure.LENGTH, result.getFailures().get(6));
+        assertEquals(IbanFailure.FORMAT, result.getFailures().get(7));
+    }
+
+    @Test
+    void validateFixedWidthTest() {
+        StringBuilder sb = new StringBuilder();
+        for (String iban : IBANS) {
+            sb.append(String.format("%-34s;", iban));
+        }
+        IbanBulkResult result = IbanBulkValidator.validateFixedWidth(buffer(sb.toString().replace(';', '\n')), 35);
+
+        assertEquals(9, result.getRows());
+        assertEquals(4, result.getValidCount());
+        assertEquals(5, result.getFailures().size());
+        assertEquals(IbanFailure.FORMAT, result.getFailures().get(7));
+    }
+
+    @Test
+    void validateDelimitedChunksTest() {
+        List<String> ibans = randomIbans(5000);
+        ByteBuffer buffer = buffer(String.join(",", ibans));
+        for (int chunkSize : new int[]{1, 7, 64, 1000, 1 << 20}) {
+            assertMatchesValidateIBAN(ibans, IbanBulkValidator.validateDelimited(buffer, (byte) ',', null, chunkSize));
+        }
+    }
+
+    @Test
+    void validateFixedWidthChunksTest() {
+        List<String> ibans = randomIbans(5000);
+        StringBuilder sb = new StringBuilder();
+        ibans.forEach(iban -> sb.append(String.format("%-34s", iban)));
+        ByteBuffer buffer = buffer(sb.toString());
+        for (int chunkSize : new int[]{1, 100, 1000, 1 << 20}) {
+            assertMatchesValidateIBAN(ibans, IbanBulkValidator.validateFixedWidth(buffer, 34, null, chunkSize));
+        }
+    }
+
+    @Test
+    void validateMappedFileTest(@TempDir Path dir) throws IOException {
+        List<String> ibans = randomIbans(3000);
+        Path delimited = Files.writeString(dir.resolve("ibans.txt"), String.join("\n", ibans) + "\n");
+        assertMatchesValidateIBAN(ibans, IbanBulkValidator.validateDelimited(delimited, (byte) '\n'));
+        assertMatchesValidateIBAN(ibans, IbanBulkValidator.validateDelimited(delimited, (byte) '\n', null, 4096, 512));
+
+        StringBuilder sb = new StringBuilder();
+        ibans.forEach(iban -> sb.append(String.format("%-34s", iban)));
+        Path fixed = Files.writeString(dir.resolve("ibans.dat"), sb.toString());
+        assertMatchesValidateIBAN(ibans, IbanBulkValidator.validateFixedWidth(fixed, 34));
+        assertMatchesValidateIBAN(ibans, IbanBulkValidator.validateFixedWidth(fixed, 34, null, 4096, 512));
+    }
+
+    @Test
+    void validateEmptyTest() {
+        assertEquals(0, IbanBulkValidator.validateDelimited(buffer(""), (byte) '\n').getRows());
+        assertEquals(0, IbanBulkValidator.validateFixedWidth(buffer(""), 34).getRows());
+        assertThrows(EpcException.class, () -> IbanBulkValidator.validateFixedWidth(buffer(""), 0));
+    }
+
+    private static void assertMatchesValidateIBAN(List<String> ibans, IbanBulkResult result) {
+        assertEquals(ibans.size(), result.getRows());
+        for (int i = 0; i < ibans.size(); i++) {
+            boolean valid = SepaUtils.validateIBAN(ibans.get(i));
+            assertEquals(valid, result.getValid().get(i), ibans.get(i));
+            assertEquals(valid, !result.getFailures().containsKey(i), ibans.get(i));
+        }
+    }
+
+    private static List<String> randomIbans(int count) {
+        Random random = new Random(42);
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String iban = IBANS[random.nextInt(IBANS.length)];
+            if (!iban.isEmpty() && random.nextBoolean()) {
+                char[] chars = iban.toCharArray();
+                int position = 2 + random.nextInt(chars.length - 2);
+                if (Character.isDigit(chars[position])) {
+                    chars[position] = (char) ('0' + random.nextInt(10));
+                }
+                iban = new String(chars);
+            }
+            ibans.add(iban);
+        }
+        return ibans;
+    }
+
+    private static ByteBuffer buffer(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
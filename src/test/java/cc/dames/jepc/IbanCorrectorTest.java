@@ -0,0 +1,93 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IbanCorrectorTest {
+
+    @Test
+    void substitutionTest() {
+        List<String> suggestions = IbanCorrector.suggest("DE33 1002 0500 0001 1947 01");
+        assertTrue(suggestions.contains("DE33100205000001194700"));
+        suggestions.forEach(s -> assertTrue(SepaUtils.validateIBAN(s), s));
+    }
+
+    @Test
+    void transpositionTest() {
+        List<String> suggestions = IbanCorrector.suggest("DE33100205000001197400");
+        assertTrue(suggestions.contains("DE33100205000001194700"));
+    }
+
+    @Test
+    void wrongTypeTest() {
+        assertEquals(List.of("DE33100205000001194700"), IbanCorrector.suggest("DE331002O5000001194700"));
+        assertEquals(List.of(), IbanCorrector.suggest("DE331002O50000011947O0"));
+    }
+
+    @Test
+    void noSuggestionTest() {
+        assertEquals(List.of(), IbanCorrector.suggest("DE33100205000001194700"));
+        assertEquals(List.of(), IbanCorrector.suggest("DE3310020500000119470"));
+        assertEquals(List.of(), IbanCorrector.suggest("XX33100205000001194700"));
+        assertEquals(List.of(), IbanCorrector.suggest(""));
+        assertEquals(List.of(), IbanCorrector.suggest(null));
+    }
+
+    @Test
+    void bruteForceTest() {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(5L).withInvalidRatio(0).build();
+        SplittableRandom random = new SplittableRandom(5L);
+        for (long n = 0; n < 500; n++) {
+            char[] chars = generator.record(n).getRequest().getIban().toCharArray();
+            IbanCountry country = IbanCountry.of(new String(chars));
+            int i = 2 + random.nextInt(chars.length - 2);
+            if (random.nextBoolean() && i < chars.length - 1 && country.isLetterAt(i) == country.isLetterAt(i + 1)) {
+                char c = chars[i];
+                chars[i] = chars[i + 1];
+                chars[i + 1] = c;
+            } else if (country.isLetterAt(i)) {
+                chars[i] = (char) ('A' + (chars[i] - 'A' + 1 + random.nextInt(25)) % 26);
+            } else {
+                chars[i] = (char) ('0' + (chars[i] - '0' + 1 + random.nextInt(9)) % 10);
+            }
+            String typo = new String(chars);
+            if (SepaUtils.validateIBAN(typo)) {
+                assertEquals(List.of(), IbanCorrector.suggest(typo));
+                continue;
+            }
+            assertEquals(bruteForce(typo, country), IbanCorrector.suggest(typo), typo);
+        }
+    }
+
+    private static List<String> bruteForce(String iban, IbanCountry country) {
+        List<String> candidates = new ArrayList<>();
+        for (int i = 2; i < iban.length(); i++) {
+            String alphabet = country.isLetterAt(i) ? "ABCDEFGHIJKLMNOPQRSTUVWXYZ" : "0123456789";
+            for (char c : alphabet.toCharArray()) {
+                char[] chars = iban.toCharArray();
+                if (chars[i] != c) {
+                    chars[i] = c;
+                    if (SepaUtils.validateIBAN(new String(chars))) {
+                        candidates.add(new String(chars));
+                    }
+                }
+            }
+        }
+        for (int i = 2; i < iban.length() - 1; i++) {
+            char[] chars = iban.toCharArray();
+            if (chars[i] != chars[i + 1] && country.isLetterAt(i) == country.isLetterAt(i + 1)) {
+                chars[i] = iban.charAt(i + 1);
+                chars[i + 1] = iban.charAt(i);
+                if (SepaUtils.validateIBAN(new String(chars))) {
+                    candidates.add(new String(chars));
+                }
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,192 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NationalCheckDigitsTest {
+
+    private static final NationalCheckDigits FIXED = new NationalCheckDigits.Builder().build();
+
+    // examples of the IBAN registry, the French one with a numeric account number like IbanCountry.FR
+    private static final String[] REGISTRY_EXAMPLES = {
+            "BE68539007547034",
+            "ES9121000418450200051332",
+            "FI2112345600000785",
+            "FR7630002005500000157862004",
+            "IT60X0542811101000000123456",
+            "MC5811222000010123456789030",
+            "NO9386011117947",
+            "PT50000201231234567890154",
+            "SM86U0322509800000000270100"
+    };
+
+    // method, valid accounts, worked from the weights and remainder rules of the Bundesbank method descriptions
+    private static final String[][] GERMAN_EXAMPLES = {
+            {"02", "9876543216", "1234567897"},
+            {"03", "9876543210", "0001234567"},
+            {"04", "9876543211", "1234567892"},
+            {"05", "9876543213", "0001234561"},
+            {"07", "9876543210", "0001234560"},
+            {"08", "0009123456", "1234567897"},
+            {"10", "9876543210", "1234567890"},
+            {"11", "9876543210", "1234567899"},
+            {"20", "9876543218", "1234567896"},
+            {"32", "9876543219", "1234567897"},
+            {"33", "9876543217", "0001234567"},
+            {"38", "9876543217", "1234567899"}
+    };
+
+    private static String german(String bankCode, String account) {
+        return SepaUtils.createIBAN(IbanCountry.DE, bankCode + account);
+    }
+
+    /**
+     * Changes one character of the BBAN and corrects the IBAN checksum, so only the national check fails
+     */
+    private static String corrupt(String iban, int index) {
+        char c = iban.charAt(index);
+        char replaced = c >= '0' && c <= '9' ? (char) ('0' + (c - '0' + 1) % 10) : (char) ('A' + (c - 'A' + 1) % 26);
+        String bban = iban.substring(4, index) + replaced + iban.substring(index + 1);
+        return SepaUtils.createIBAN(IbanCountry.of(iban), bban);
+    }
+
+    @Test
+    void registryExamplesTest() {
+        for (String iban : REGISTRY_EXAMPLES) {
+            assertTrue(SepaUtils.validateIBAN(iban), iban);
+            assertTrue(FIXED.validate(iban), iban);
+            String wrong = corrupt(iban, iban.length() - 1);
+            assertTrue(SepaUtils.validateIBAN(wrong), wrong);
+            assertFalse(FIXED.validate(wrong), wrong);
+        }
+        // no national check digits
+        assertTrue(FIXED.validate("AT611904300234573201"));
+        // without bank code file German accounts are not checked
+        assertTrue(FIXED.validate("DE33100205000001194700"));
+    }
+
+    @Test
+    void germanMethodsTest() {
+        NationalCheckDigits national = new NationalCheckDigits.Builder()
+                .withBankCode("10000000", "00")
+                .withBankCode("20000000", "01")
+                .withBankCode("30000000", "06")
+                .withBankCode("40000000", "09")
+                .withBankCode("50000000", "E4")
+                .build();
+        assertEquals(5, national.getBankCodeCount());
+        assertEquals("E4", national.getMethod("50000000"));
+        assertNull(national.getMethod("60000000"));
+
+        // examples of the Bundesbank for method 00
+        for (String account : new String[]{"0009290701", "0539290858", "0001501824", "0001501832"}) {
+            assertTrue(national.validate(german("10000000", account)), account);
+            assertFalse(national.validate(corrupt(german("10000000", account), 21)), account);
+        }
+        assertTrue(national.validate(german("20000000", "0000123451")));
+        assertFalse(national.validate(german("20000000", "0000123452")));
+        assertTrue(national.validate(german("30000000", "0000123455")));
+        assertFalse(national.validate(german("30000000", "0000123454")));
+        assertTrue(national.validate(german("40000000", "0000123454")));
+        // unsupported method
+        assertTrue(national.validate(german("50000000", "0000123454")));
+        // unknown bank code
+        assertFalse(national.validate(german("60000000", "0000123451")));
+
+        assertTrue(national.isSupported("10000000"));
+        assertTrue(national.isSupported("40000000"));
+        // unsupported method passes unchecked, unknown bank code
+        assertFalse(national.isSupported("50000000"));
+        assertFalse(national.isSupported("60000000"));
+        assertThrows(EpcException.class, () -> national.isSupported("1000000X"));
+        assertThrows(EpcException.class, () -> national.getMethod("1000000"));
+        assertThrows(EpcException.class, () -> national.getMethod("1000000X"));
+        assertThrows(EpcException.class, () -> national.getMethod(null));
+    }
+
+    @Test
+    void germanExamplesTest() {
+        NationalCheckDigits.Builder builder = new NationalCheckDigits.Builder();
+        for (int i = 0; i < GERMAN_EXAMPLES.length; i++) {
+            builder.withBankCode(bankCode(i), GERMAN_EXAMPLES[i][0]);
+        }
+        NationalCheckDigits national = builder.build();
+        for (int i = 0; i < GERMAN_EXAMPLES.length; i++) {
+            assertTrue(national.isSupported(bankCode(i)), GERMAN_EXAMPLES[i][0]);
+            for (int j = 1; j < GERMAN_EXAMPLES[i].length; j++) {
+                String iban = german(bankCode(i), GERMAN_EXAMPLES[i][j]);
+                String method = GERMAN_EXAMPLES[i][0] + " " + GERMAN_EXAMPLES[i][j];
+                assertTrue(national.validate(iban), method);
+                assertFalse(national.validate(corrupt(iban, 21)), method);
+                assertFalse(national.validate(corrupt(iban, 20)), method);
+            }
+        }
+        // 08 checks accounts from 60000 only
+        assertTrue(national.validate(german(bankCode(5), "0000059999")));
+        assertFalse(national.validate(german(bankCode(5), "0000060000")));
+    }
+
+    @Test
+    void remainderOneTest() {
+        NationalCheckDigits national = new NationalCheckDigits.Builder()
+                .withBankCode("10000000", "02")
+                .withBankCode("20000000", "04")
+                .withBankCode("30000000", "06")
+                .withBankCode("40000000", "07")
+                .withBankCode("50000000", "10")
+                .withBankCode("60000000", "11")
+                .build();
+        // weighted sums with remainder 1: no check digit is valid for 02, 04 and 07, 06 and 10 take 0, 11 takes 9
+        String[][] remainderOne = {
+                {"10000000", "123456006", null},
+                {"20000000", "123456009", null},
+                {"30000000", "123456009", "0"},
+                {"40000000", "123456002", null},
+                {"50000000", "123456002", "0"},
+                {"60000000", "123456002", "9"}
+        };
+        for (String[] example : remainderOne) {
+            for (char check = '0'; check <= '9'; check++) {
+                String account = example[1] + check;
+                boolean valid = example[2] != null && example[2].charAt(0) == check;
+                assertEquals(valid, national.validate(german(example[0], account)), example[0] + " " + account);
+            }
+        }
+    }
+
+    private static String bankCode(int index) {
+        return String.format("%08d", (index + 1) * 1000000);
+    }
+
+    @Test
+    void bankCodeFileTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("blz.txt");
+        String name = String.format("%-58s", "Testbank");
+        String line = "10000000" + "1" + name + "10117" + String.format("%-35s", "Berlin")
+                + String.format("%-27s", "Testbank") + "00000" + "TESTDEFFXXX" + "00" + "000001" + "U" + "0" + "00000000";
+        assertEquals(168, line.length());
+        Files.write(file, List.of(line, line.replace("10000000", "30000000").replace("XXX00", "XXX06")), StandardCharsets.ISO_8859_1);
+
+        NationalCheckDigits national = new NationalCheckDigits.Builder().withBankCodeFile(file).build();
+        assertEquals("00", national.getMethod("10000000"));
+        assertEquals("06", national.getMethod("30000000"));
+
+        String ibans = String.join("\n", german("10000000", "0009290701"), german("10000000", "0009290702"),
+                german("30000000", "0000123455"), german("70000000", "0000123455"), "BE68539007547034", "DE00");
+        IbanBulkResult result = IbanBulkValidator.validateDelimited(
+                ByteBuffer.wrap(ibans.getBytes(StandardCharsets.US_ASCII)), (byte) '\n', national);
+        assertEquals(6, result.getRows());
+        assertEquals(3, result.getValidCount());
+        assertEquals(IbanFailure.NATIONAL_CHECK_DIGITS, result.getFailures().get(1));
+        assertEquals(IbanFailure.NATIONAL_CHECK_DIGITS, result.getFailures().get(3));
+        assertEquals(IbanFailure.LENGTH, result.getFailures().get(5));
+    }
+}
@@ -0,0 +1,147 @@
+package cc.dames.jepc;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QrDecoderTest {
+
+    private static final Epc.Builder REQUEST = new Epc.Builder()
+            .withIssuer("Wikimedia Fördergesellschaft")
+            .withIBAN("DE33100205000001194700")
+            .withTransferAmount(new BigDecimal("123.45"))
+            .withIntendedUse("Spende")
+            .withUmlauts(true);
+
+    /**
+     * Reference matrix of zxing, without quiet zone
+     */
+    static QrMatrix zxing(String content, ErrorCorrectionLevel level, int version) throws Exception {
+        Map<EncodeHintType, Object> hints = Map.of(EncodeHintType.CHARACTER_SET, "UTF-8", EncodeHintType.QR_VERSION, version);
+        QRCode code = Encoder.encode(content, level, hints);
+        boolean[][] modules = new boolean[code.getMatrix().getHeight()][code.getMatrix().getWidth()];
+        for (int y = 0; y < modules.length; y++) {
+            for (int x = 0; x < modules.length; x++) {
+                modules[y][x] = code.getMatrix().get(x, y) == 1;
+            }
+        }
+        return QrMatrix.of(modules);
+    }
+
+    static BufferedImage render(String content, int size) throws Exception {
+        BitMatrix matrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, size, size,
+                Map.of(EncodeHintType.CHARACTER_SET, "UTF-8", EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M));
+        // RGB without conversion, gray images fill a shared JDK lookup table on first use, racy in parallel
+        BufferedImage image = new BufferedImage(matrix.getWidth(), matrix.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                image.setRGB(x, y, matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    void reedSolomonTest() {
+        SplittableRandom random = new SplittableRandom(1L);
+        for (int round = 0; round < 200; round++) {
+            int ecCount = 7 + random.nextInt(24);
+            byte[] data = new byte[1 + random.nextInt(120)];
+            random.nextBytes(data);
+            byte[] ec = QrReedSolomon.encode(data, 0, data.length, ecCount);
+            int[] block = new int[data.length + ecCount];
+            for (int i = 0; i < block.length; i++) {
+                block[i] = (i < data.length ? data[i] : ec[i - data.length]) & 0xFF;
+            }
+            int[] expected = block.clone();
+            int errors = random.nextInt(ecCount / 2 + 1);
+            for (int e = 0; e < errors; e++) {
+                block[random.nextInt(block.length)] ^= 1 + random.nextInt(255);
+            }
+            QrReedSolomon.decode(block, ecCount);
+            assertArrayEquals(expected, block);
+        }
+    }
+
+    @Test
+    void versionsTest() throws Exception {
+        SplittableRandom random = new SplittableRandom(2L);
+        for (int version = 1; version <= 40; version++) {
+            for (ErrorCorrectionLevel level : ErrorCorrectionLevel.values()) {
+                QrVersion structure = QrVersion.of(version);
+                int capacity = structure.dataCodewords(QrLevel.valueOf(level.name())) - 3 - (version > 9 ? 1 : 0);
+                StringBuilder content = new StringBuilder();
+                for (int i = random.nextInt(Math.max(1, capacity)) + 1; i > 0 && content.length() < capacity; i--) {
+                    content.append((char) ('a' + random.nextInt(26)));
+                }
+                QrMatrix matrix = zxing(content.toString(), level, version);
+                assertEquals(content.toString(), new String(QrDecoder.decode(matrix), StandardCharsets.UTF_8),
+                        "version " + version + " level " + level);
+            }
+        }
+    }
+
+    @Test
+    void segmentsTest() throws Exception {
+        for (String content : new String[]{"0123456789", "HELLO WORLD 42", "https://example.com/?a=1", "12"}) {
+            assertEquals(content, new String(QrDecoder.decode(zxing(content, ErrorCorrectionLevel.M, 2)), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void damagedTest() throws Exception {
+        String payload = REQUEST.build();
+        QrMatrix matrix = zxing(payload, ErrorCorrectionLevel.M, 6);
+        SplittableRandom random = new SplittableRandom(3L);
+        QrVersion version = QrVersion.of(6);
+        // a few flipped data modules and a damaged format information copy
+        for (int i = 0; i < 12; i++) {
+            int index = version.getDataModules()[random.nextInt(version.getDataModules().length)];
+            matrix.set(index, !matrix.get(index));
+        }
+        matrix.set(8, 0, !matrix.get(8, 0));
+        matrix.set(8, 1, !matrix.get(8, 1));
+        assertTrue(QrDecoder.verify(matrix, REQUEST));
+        assertFalse(QrDecoder.verify(matrix, new Epc.Builder().withIBAN("DE33100205000001194700").withIssuer("Other")
+                .withTransferAmount(BigDecimal.ONE)));
+    }
+
+    @Test
+    void imageTest() throws Exception {
+        String payload = REQUEST.build();
+        for (int size : new int[]{0, 150, 333, 600}) {
+            BufferedImage image = render(payload, size);
+            assertArrayEquals(payload.getBytes(StandardCharsets.UTF_8), QrDecoder.decode(image));
+            assertTrue(QrDecoder.verify(image, REQUEST));
+        }
+        assertThrows(EpcException.class, () -> QrDecoder.decode(new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    void parallelTest() {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(4L).withInvalidRatio(0).build();
+        long verified = LongStream.range(0, 200).parallel().filter(i -> {
+            try {
+                Epc.Builder request = generator.record(i).getRequest();
+                return QrDecoder.verify(render(request.build(), 0), request);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).count();
+        assertEquals(200L, verified);
+    }
+}
@@ -0,0 +1,114 @@
+package cc.dames.jepc;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QrEncoderTest {
+
+    private static final Epc.Builder REQUEST = new Epc.Builder()
+            .withIssuer("Wikimedia Fördergesellschaft")
+            .withIBAN("DE33100205000001194700")
+            .withTransferAmount(new BigDecimal("123.45"))
+            .withIntendedUse("Spende")
+            .withUmlauts(true);
+
+    private static String zxingDecode(BufferedImage image) throws Exception {
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(image.getWidth(), image.getHeight(), pixels)));
+        return new QRCodeReader().decode(bitmap, Map.of(DecodeHintType.PURE_BARCODE, true,
+                DecodeHintType.CHARACTER_SET, "UTF-8")).getText();
+    }
+
+    @Test
+    void encodeTest() throws Exception {
+        QrMatrix matrix = QrEncoder.encode(REQUEST);
+        assertEquals(41, matrix.getSize());
+        assertTrue(QrDecoder.verify(matrix, REQUEST));
+        BufferedImage image = new QrRenderer.Builder().build().toImage(matrix);
+        assertEquals((41 + 8) * 4, image.getWidth());
+        assertEquals(REQUEST.build(), zxingDecode(image));
+        assertTrue(QrDecoder.verify(image, REQUEST));
+    }
+
+    @Test
+    void versionsTest() throws Exception {
+        SplittableRandom random = new SplittableRandom(1L);
+        QrRenderer renderer = new QrRenderer.Builder().withScale(2).build();
+        for (QrLevel level : QrLevel.values()) {
+            for (int length = 1; length < 1200; length += 1 + random.nextInt(90)) {
+                byte[] data = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    data[i] = (byte) ('a' + random.nextInt(26));
+                }
+                QrMatrix matrix = QrEncoder.encode(data, level);
+                assertArrayEquals(data, QrDecoder.decode(matrix), level + " " + length);
+                assertEquals(new String(data, StandardCharsets.ISO_8859_1), zxingDecode(renderer.toImage(matrix)), level + " " + length);
+            }
+        }
+        assertThrows(EpcException.class, () -> QrEncoder.encode(new byte[3000], QrLevel.L));
+    }
+
+    @Test
+    void maximumPayloadTest() {
+        Epc.Builder request = new Epc.Builder()
+                .withBIC("COBADEFFXXX")
+                .withIssuer("x".repeat(70))
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("999999999.99"))
+                .withSepaPurpose(SepaPurpose.CHAR)
+                .withIntendedUse("y".repeat(140))
+                .withMessage("z".repeat(48));
+        assertEquals(Epc.MAX_PAYLOAD_BYTES, request.build().length());
+        QrMatrix matrix = QrEncoder.encode(request);
+        assertTrue(matrix.getSize() <= 17 + 4 * 13);
+        assertTrue(QrDecoder.verify(matrix, request));
+    }
+
+    @Test
+    void pngTest() throws Exception {
+        QrMatrix matrix = QrEncoder.encode(REQUEST);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        new QrRenderer.Builder().withScale(3).withQuietZone(2).build().writePng(matrix, png);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertEquals((41 + 4) * 3, image.getWidth());
+        assertEquals(matrix, QrDecoder.sample(image));
+        assertTrue(png.size() < 1000, () -> "PNG of " + png.size() + " bytes");
+    }
+
+    @Test
+    void dataUriTest() throws Exception {
+        QrRenderer renderer = new QrRenderer.Builder().build();
+        StringBuilder html = new StringBuilder("<img src=\"");
+        renderer.appendDataUri(REQUEST, html);
+        html.append("\">");
+
+        String uri = html.substring(10, html.length() - 2);
+        assertTrue(uri.startsWith("data:image/png;base64,"));
+        byte[] png = Base64.getDecoder().decode(uri.substring(22));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        renderer.writePng(QrEncoder.encode(REQUEST), expected);
+        assertArrayEquals(expected.toByteArray(), png);
+        assertTrue(QrDecoder.verify(ImageIO.read(new ByteArrayInputStream(png)), REQUEST));
+
+        StringWriter writer = new StringWriter();
+        renderer.appendDataUri(REQUEST, writer);
+        assertEquals(uri, writer.toString());
+    }
+}
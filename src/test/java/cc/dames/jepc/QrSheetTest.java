@@ -0,0 +1,169 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QrSheetTest {
+
+    private static List<Epc.Builder> requests(int count) {
+        EpcDataGenerator generator = new EpcDataGenerator.Builder().withSeed(7L).withInvalidRatio(0).build();
+        return generator.stream(count).map(EpcRecord::getRequest).collect(Collectors.toList());
+    }
+
+    private static byte[] write(QrSheet sheet, List<Epc.Builder> requests, long pages) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(pages, sheet.write(requests, Channels.newChannel(out)));
+        byte[] bytes = out.toByteArray();
+        assertEquals(pages * sheet.getPageBytes(), bytes.length);
+        return bytes;
+    }
+
+    private static boolean pixel(byte[] bytes, QrSheet sheet, int page, int x, int y) {
+        int header = (int) (sheet.getPageBytes() - (long) (sheet.getWidth() + 7) / 8 * sheet.getHeight());
+        int offset = (int) (page * sheet.getPageBytes()) + header + y * ((sheet.getWidth() + 7) / 8) + x / 8;
+        return (bytes[offset] & (0x80 >>> (x % 8))) != 0;
+    }
+
+    @Test
+    void layoutTest() throws Exception {
+        QrSheet sheet = new QrSheet.Builder().withPageSize(403, 300).withGrid(3, 2).withMargin(10)
+                .withScale(1).withWorkers(2).build();
+        List<Epc.Builder> requests = requests(14);
+        byte[] bytes = write(sheet, requests, 3);
+        assertEquals("P4\n403 300\n", new String(bytes, 0, 11, StandardCharsets.US_ASCII));
+
+        int cellWidth = (403 - 20) / 3;
+        int cellHeight = (300 - 20) / 2;
+        for (int i = 0; i < 18; i++) {
+            int page = i / 6;
+            int left = 10 + i % 3 * cellWidth;
+            int top = 10 + i % 6 / 3 * cellHeight;
+            if (i < requests.size()) {
+                QrMatrix matrix = QrEncoder.encode(requests.get(i));
+                int x0 = left + (cellWidth - matrix.getSize()) / 2;
+                int y0 = top + (cellHeight - matrix.getSize()) / 2;
+                BufferedImage image = new BufferedImage(cellWidth, cellHeight, BufferedImage.TYPE_BYTE_BINARY);
+                for (int y = 0; y < cellHeight; y++) {
+                    for (int x = 0; x < cellWidth; x++) {
+                        boolean dark = pixel(bytes, sheet, page, left + x, top + y);
+                        int mx = left + x - x0;
+                        int my = top + y - y0;
+                        boolean expected = mx >= 0 && my >= 0 && mx < matrix.getSize() && my < matrix.getSize()
+                                && matrix.get(mx, my);
+                        assertEquals(expected, dark, "tile " + i + " at " + x + "," + y);
+                        image.setRGB(x, y, dark ? 0xFF000000 : 0xFFFFFFFF);
+                    }
+                }
+                assertEquals(matrix, QrDecoder.sample(image));
+            } else {
+                for (int y = 0; y < cellHeight; y++) {
+                    for (int x = 0; x < cellWidth; x++) {
+                        assertFalse(pixel(bytes, sheet, page, left + x, top + y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void workersTest() throws Exception {
+        List<Epc.Builder> requests = requests(25);
+        QrSheet.Builder builder = new QrSheet.Builder().withPageSize(600, 420).withGrid(3, 2).withMargin(0);
+        byte[] single = write(builder.withWorkers(1).build(), requests, 5);
+        byte[] parallel = write(builder.withWorkers(4).build(), requests, 5);
+        assertArrayEquals(single, parallel);
+        assertEquals(0, write(builder.build(), List.of(), 0).length);
+    }
+
+    @Test
+    void a4Test() throws Exception {
+        QrSheet sheet = new QrSheet.Builder().build();
+        assertEquals(12, sheet.getTilesPerPage());
+        List<Epc.Builder> requests = requests(13);
+        byte[] bytes = write(sheet, requests, 2);
+        // first tile, scaled to fill the tile
+        int cell = (QrSheet.A4_WIDTH - 236) / 3;
+        BufferedImage image = new BufferedImage(cell, cell, BufferedImage.TYPE_BYTE_BINARY);
+        for (int y = 0; y < cell; y++) {
+            for (int x = 0; x < cell; x++) {
+                image.setRGB(x, y, pixel(bytes, sheet, 0, 118 + x, 118 + y) ? 0xFF000000 : 0xFFFFFFFF);
+            }
+        }
+        assertTrue(QrDecoder.verify(image, requests.get(0)));
+    }
+
+    @Test
+    void failureTest() throws Exception {
+        QrSheet sheet = new QrSheet.Builder().withPageSize(300, 200).withGrid(2, 1).withMargin(0).withWorkers(3).build();
+        List<Epc.Builder> requests = requests(12);
+        requests.get(9).withIBAN("DE00");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EpcException thrown = assertThrows(EpcException.class, () -> sheet.write(requests, Channels.newChannel(out)));
+        // the pages before the one of the invalid request are complete
+        assertEquals(4 * sheet.getPageBytes(), out.size());
+        assertTrue(thrown.getMessage().startsWith("page 5: "), thrown.getMessage());
+        assertTrue(thrown.getMessage().endsWith(", 4 complete pages written"), thrown.getMessage());
+        assertEquals("iban", thrown.getField());
+        assertArrayEquals(write(sheet, requests.subList(0, 8), 4), out.toByteArray());
+
+        WritableByteChannel failing = new WritableByteChannel() {
+            private long bytes;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (bytes + src.remaining() > 2 * sheet.getPageBytes() + 100) {
+                    throw new IOException("disk full");
+                }
+                bytes += src.remaining();
+                src.position(src.limit());
+                return (int) bytes;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IOException failed = assertThrows(IOException.class, () -> sheet.write(requests(8), failing));
+        assertEquals("writing page 3 failed, 2 complete pages written", failed.getMessage());
+    }
+
+    @Test
+    void fillRunTest() {
+        byte[] row = new byte[4];
+        QrSheet.fillRun(row, 0, 3, 5);
+        QrSheet.fillRun(row, 0, 7, 25);
+        assertArrayEquals(new byte[]{0x19, (byte) 0xFF, (byte) 0xFF, (byte) 0x80}, row);
+        Arrays.fill(row, (byte) 0);
+        QrSheet.fillRun(row, 1, 8, 16);
+        assertArrayEquals(new byte[]{0, 0, (byte) 0xFF, 0}, row);
+    }
+
+    @Test
+    void invalidTest() {
+        QrSheet small = new QrSheet.Builder().withPageSize(100, 100).withMargin(0).withGrid(2, 2).build();
+        assertThrows(EpcException.class, () -> write(small, requests(1), 1));
+        QrSheet sheet = new QrSheet.Builder().withPageSize(400, 400).withWorkers(2).build();
+        List<Epc.Builder> requests = requests(3);
+        requests.set(2, new Epc.Builder().withIBAN("DE00"));
+        assertThrows(EpcException.class, () -> sheet.write(requests, Channels.newChannel(new ByteArrayOutputStream())));
+        assertThrows(EpcException.class, () -> new QrSheet.Builder().withPageSize(100, 100).withMargin(50).build());
+        assertThrows(EpcException.class, () -> new QrSheet.Builder().withWorkers(0));
+    }
+}
@@ -0,0 +1,100 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScorAllocatorTest {
+
+    @Test
+    void nextTest(@TempDir Path dir) {
+        ScorAllocator allocator = new ScorAllocator.Builder()
+                .withStore(new FileSequenceStore(dir.resolve("sequence")))
+                .withPrefix("INV")
+                .withWidth(8)
+                .build();
+
+        String first = allocator.next();
+        assertEquals(SepaUtils.createSCOR("INV00000001"), first);
+        assertTrue(SepaUtils.validateSCOR(first));
+        assertEquals(SepaUtils.createSCOR("INV00000002"), allocator.next());
+    }
+
+    @Test
+    void restartTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sequence");
+        ScorAllocator allocator = new ScorAllocator.Builder().withStore(new FileSequenceStore(file)).withBlockSize(10).build();
+        assertEquals(1L, allocator.nextNumber());
+        assertEquals(2L, allocator.nextNumber());
+        assertEquals(10L, new FileSequenceStore(file).highWaterMark());
+        assertEquals("0000000000000000010\n", Files.readString(file));
+
+        ScorAllocator restarted = new ScorAllocator.Builder().withStore(new FileSequenceStore(file)).withBlockSize(10).build();
+        assertEquals(11L, restarted.nextNumber());
+    }
+
+    @Test
+    void overwriteInPlaceTest(@TempDir Path dir) throws IOException {
+        Path file = Files.writeString(dir.resolve("sequence"), "7\n");
+        FileSequenceStore store = new FileSequenceStore(file);
+        assertEquals(7L, store.highWaterMark());
+        assertEquals(8L, store.lease(100));
+        assertEquals("0000000000000000107\n", Files.readString(file));
+        assertEquals(108L, store.lease(Integer.MAX_VALUE));
+        assertEquals(20, Files.size(file));
+        assertEquals(107L + Integer.MAX_VALUE, store.highWaterMark());
+    }
+
+    @Test
+    void concurrentNodesTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("sequence");
+        Set<String> references = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int node = 0; node < 4; node++) {
+            ScorAllocator allocator = new ScorAllocator.Builder().withStore(new FileSequenceStore(file)).withBlockSize(37).build();
+            for (int thread = 0; thread < 2; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        assertTrue(references.add(allocator.next()));
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(40000, references.size());
+    }
+
+    @Test
+    void storeFailureTest() {
+        ScorAllocator allocator = new ScorAllocator.Builder().withStore(size -> {
+            throw new IOException("offline");
+        }).build();
+        assertThrows(UncheckedIOException.class, allocator::next);
+    }
+
+    @Test
+    void invalidTest() {
+        SequenceStore store = size -> 1L;
+        assertThrows(EpcException.class, () -> new ScorAllocator.Builder().build());
+        assertThrows(EpcException.class, () -> new ScorAllocator.Builder().withStore(store).withPrefix("inv").build());
+        assertThrows(EpcException.class, () -> new ScorAllocator.Builder().withStore(store).withPrefix("INV").withWidth(19).build());
+        assertThrows(EpcException.class, () -> new ScorAllocator.Builder().withStore(store).withBlockSize(0).build());
+    }
+}
@@ -0,0 +1,117 @@
+package cc.dames.jepc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScorIndexTest {
+
+    @Test
+    void lookupTest() {
+        ScorIndex index = new ScorIndex.Builder()
+                .add("RF794723M108", 1L)
+                .add("RF18 5390 0754 7034", 2L)
+                .add("RF42U0SR08RDVSXQEAUQCQJ0R", 3L)
+                .add("RF29Z", 4L)
+                .build();
+
+        assertEquals(4, index.size());
+        assertEquals(1L, index.lookup("RF794723M108"));
+        assertEquals(2L, index.lookup("RF18539007547034"));
+        assertEquals(3L, index.lookup("RF42 U0SR 08RD VSXQ EAUQ CQJ0 R"));
+        assertEquals(4L, index.lookup("RF29Z"));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup("RF89M"));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup("RF784723M108"));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup("rf794723M108"));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup("RF18000000000539007547034"));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup(""));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup(null));
+    }
+
+    @Test
+    void lookupAllocationTest() {
+        ScorIndex index = new ScorIndex.Builder().add("RF18 5390 0754 7034", 2L).build();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long found = 0;
+        for (int i = 0; i < 10000; i++) {
+            found += index.lookup("RF18 5390 0754 7034");
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertEquals(20000L, found);
+        assertTrue(allocated < 10000, allocated + " bytes allocated");
+    }
+
+    @Test
+    void leadingZerosTest() {
+        ScorIndex index = new ScorIndex.Builder()
+                .add(SepaUtils.createSCOR("0001"), 1L)
+                .add(SepaUtils.createSCOR("1"), 2L)
+                .build();
+
+        assertEquals(1L, index.lookup(SepaUtils.createSCOR("0001")));
+        assertEquals(2L, index.lookup(SepaUtils.createSCOR("1")));
+    }
+
+    @Test
+    void invalidAddTest() {
+        ScorIndex.Builder builder = new ScorIndex.Builder();
+        assertThrows(EpcException.class, () -> builder.add("RF784723M108", 1L));
+        assertThrows(EpcException.class, () -> builder.add("RF794723M108", -1L));
+        builder.add("RF794723M108", 1L).add("RF79 4723 M108", 2L);
+        assertThrows(EpcException.class, builder::build);
+    }
+
+    @Test
+    void removeTest() {
+        ScorIndex index = new ScorIndex.Builder().add("RF794723M108", 7L).build();
+
+        assertEquals(7L, index.remove("RF794723M108"));
+        assertEquals(ScorIndex.NOT_FOUND, index.remove("RF794723M108"));
+        assertEquals(ScorIndex.NOT_FOUND, index.lookup("RF794723M108"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void concurrentRemoveTest() throws Exception {
+        int count = 100_000;
+        ScorIndex.Builder builder = new ScorIndex.Builder().withExpectedSize(count);
+        List<String> references = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String scor = SepaUtils.createSCOR("INV" + i);
+            references.add(scor);
+            builder.add(scor, i);
+        }
+        ScorIndex index = builder.build();
+
+        ConcurrentLinkedQueue<Long> removed = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (String scor : references) {
+                    long invoiceId = index.remove(scor);
+                    if (invoiceId != ScorIndex.NOT_FOUND) {
+                        removed.add(invoiceId);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(count, removed.size());
+        assertEquals(count, removed.stream().distinct().count());
+        assertEquals(0, index.size());
+    }
+}
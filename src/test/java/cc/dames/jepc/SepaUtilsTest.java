@@ -1,8 +1,17 @@
 package cc.dames.jepc;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static cc.dames.jepc.SepaUtils.*;
 import static cc.dames.jepc.SepaUtils.validateSCOR;
@@ -21,6 +30,36 @@ class SepaUtilsTest {
         assertTrue(SEPA_TEXT_UMLAUTS_PATTERN.matcher("A&B Events").matches());
     }
 
+    @Test
+    void validateSepaTextTest() {
+        assertTrue(validateSepaText("Wikimedia Foerdergesellschaft", false));
+        assertTrue(validateSepaText("A&B Events", false));
+        assertFalse(validateSepaText("Wikimedia Fördergesellschaft", false));
+        assertTrue(validateSepaText("Wikimedia Fördergesellschaft", true));
+        assertFalse(validateSepaText("", false));
+        assertFalse(validateSepaText(null, true));
+        assertFalse(validateSepaText("100 €", true));
+    }
+
+    @Test
+    void validateSepaTextMatchesPatternTest() {
+        for (char c = 0; c < 0x250; c++) {
+            String value = "a" + c;
+            assertEquals(SEPA_TEXT_PATTERN.matcher(value).matches(), validateSepaText(value, false), value);
+            assertEquals(SEPA_TEXT_UMLAUTS_PATTERN.matcher(value).matches(), validateSepaText(value, true), value);
+        }
+    }
+
+    @Test
+    void validateSepaTextsTest() {
+        BitSet valid = validateSepaTexts(List.of("Spende", "Fördern", "", "Miete 10/2024"), false);
+        assertEquals(4, valid.length());
+        assertTrue(valid.get(0));
+        assertFalse(valid.get(1));
+        assertFalse(valid.get(2));
+        assertTrue(valid.get(3));
+    }
+
     @Test
     void ibanPatternTest() {
         assertFalse(IBAN_PATTERN.matcher("").matches());
@@ -41,6 +80,73 @@ class SepaUtilsTest {
         assertTrue(BIC_REGEX_PATTERN.matcher("ZUNOCZPP").matches());
     }
 
+    @Test
+    void validateIBANFormatTest() {
+        assertTrue(validateIBANFormat("DE19200411330823122700"));
+        assertTrue(validateIBANFormat("nl79rabo2423554788"));
+        assertTrue(validateIBANFormat("IT60X0542811101000000123456"));
+        assertFalse(validateIBANFormat("NL791ABO2423554788"));
+        assertFalse(validateIBANFormat("DE1920041133082312270"));
+        assertFalse(validateIBANFormat("US19200411330823122700"));
+        assertFalse(validateIBANFormat(""));
+        assertFalse(validateIBANFormat(null));
+        // non-ASCII letters whose upper case is ASCII
+        for (String iban : new String[]{"\u0131T60X0542811101000000123456", "\u017FE0000000000000000000000"}) {
+            assertFalse(IBAN_PATTERN.matcher(iban).matches(), iban);
+            assertFalse(validateIBANFormat(iban), iban);
+            assertNull(IbanCountry.of(iban), iban);
+        }
+        assertThrows(EpcException.class, () -> new Epc.Builder().withIBAN("\u0131T60X0542811101000000123456")
+                .withTransferAmount(BigDecimal.ONE).build());
+    }
+
+    @Test
+    void validateIBANFormatMatchesPatternTest() {
+        Random random = new Random(42);
+        String chars = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZa";
+        for (IbanCountry country : IbanCountry.values()) {
+            for (int n = 0; n < 2000; n++) {
+                StringBuilder sb = new StringBuilder(country.name());
+                int length = country.getLength() + random.nextInt(3) - 1;
+                for (int i = 2; i < length; i++) {
+                    boolean letter = country.isLetterAt(i) ^ random.nextInt(40) == 0;
+                    sb.append(letter ? chars.charAt(10 + random.nextInt(27)) : chars.charAt(random.nextInt(10)));
+                }
+                String iban = sb.toString();
+                assertEquals(IBAN_PATTERN.matcher(iban).matches(), validateIBANFormat(iban), iban);
+            }
+        }
+    }
+
+    @Test
+    void validateBICTest() {
+        assertFalse(validateBIC(""));
+        assertFalse(validateBIC(null));
+        assertTrue(validateBIC("COBADEHD001"));
+        assertTrue(validateBIC("COBADEFF060"));
+        assertTrue(validateBIC("GEBABEBB"));
+        assertTrue(validateBIC("ZUNOCZPP"));
+        assertTrue(validateBIC("ZUNOCZPPXXX"));
+        assertFalse(validateBIC("ZUNOCZPPXAB"));
+        assertFalse(validateBIC("ZUNOCZ1P"));
+        assertFalse(validateBIC("ZUNOCZPO"));
+    }
+
+    @Test
+    void validateBICMatchesPatternTest() {
+        Random random = new Random(42);
+        String chars = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZoxX";
+        for (int n = 0; n < 50000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextBoolean() ? 8 : 11;
+            for (int i = 0; i < length; i++) {
+                sb.append(i < 6 && random.nextInt(20) != 0 ? chars.charAt(10 + random.nextInt(26)) : chars.charAt(random.nextInt(chars.length())));
+            }
+            String bic = sb.toString();
+            assertEquals(BIC_REGEX_PATTERN.matcher(bic).matches(), validateBIC(bic), bic);
+        }
+    }
+
     @Test
     void maxAmountTest() {
         assertFalse(exceedAmount(new BigDecimal("0.01")));
@@ -94,6 +200,20 @@ class SepaUtilsTest {
     @Test
     void createSCORTest() {
         assertEquals("RF794723M108", createSCOR("4723M108"));
+        for (int i = 1; i < 1000; i++) {
+            String scor = createSCOR(String.valueOf(i));
+            assertEquals(String.valueOf(i).length() + 4, scor.length(), scor);
+            assertTrue(validateSCOR(scor), scor);
+        }
+        assertThrows(EpcException.class, () -> createSCOR("47-23"));
+    }
+
+    @Test
+    void createIBANTest() {
+        assertEquals("DE18200411330823122700", createIBAN(IbanCountry.DE, "200411330823122700"));
+        assertEquals("NL79RABO2423554788", createIBAN(IbanCountry.NL, "RABO2423554788"));
+        assertThrows(EpcException.class, () -> createIBAN(IbanCountry.NL, "2423554788"));
+        assertThrows(EpcException.class, () -> createIBAN(IbanCountry.DE, "2004113308231227-0"));
     }
 
     @Test
@@ -108,4 +228,27 @@ class SepaUtilsTest {
         assertTrue(validateIBAN("CH8589144649296413173"));
         assertTrue(validateIBAN("AT835400037618454391"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void validationEventTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("validation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("cc.dames.jepc.Validation");
+            recording.start();
+            validateIBAN("DE18200411330823122700");
+            validateSCOR("RF35C4");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("cc.dames.jepc.Validation"))
+                .collect(Collectors.toList());
+        assertEquals(2, events.size());
+        assertEquals("IBAN", events.get(0).getString("validator"));
+        assertEquals(22, events.get(0).getInt("inputLength"));
+        assertTrue(events.get(0).getBoolean("valid"));
+        assertEquals("SCOR", events.get(1).getString("validator"));
+        assertFalse(events.get(1).getBoolean("valid"));
+    }
+}
@@ -0,0 +1,45 @@
+package cc.dames.jepc;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Time from process start to the first {@link Epc.Builder#build()}, not part of the test suite.
+ * <p>
+ * JVM:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes cc.dames.jepc.StartupBenchmark
+ * </pre>
+ * native image, the metadata in META-INF/native-image is picked up from target/classes:
+ * <pre>
+ * native-image -cp target/classes:target/test-classes cc.dames.jepc.StartupBenchmark target/epc-startup
+ * target/epc-startup
+ * </pre>
+ */
+public final class StartupBenchmark {
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+
+        String generated = new Epc.Builder()
+                .withIssuer("Wikimedia Foerdergesellschaft")
+                .withIBAN("DE33100205000001194700")
+                .withTransferAmount(new BigDecimal("123.45"))
+                .withScor(SepaUtils.createSCOR("4723M108"))
+                .build();
+
+        long firstBuild = System.nanoTime() - start;
+        Instant processStart = ProcessHandle.current().info().startInstant().orElse(null);
+
+        System.out.println("payload bytes:          " + generated.length());
+        System.out.println("first build():          " + firstBuild / 1_000 + " us");
+        if (processStart != null) {
+            System.out.println("process start to build: " + Duration.between(processStart, Instant.now()).toMillis() + " ms");
+        }
+    }
+}